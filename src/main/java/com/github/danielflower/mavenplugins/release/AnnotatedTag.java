@@ -1,89 +1,130 @@
 package com.github.danielflower.mavenplugins.release;
 
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.ConcurrentRefUpdateException;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.api.errors.NoHeadException;
+import org.eclipse.jgit.api.errors.RefAlreadyExistsException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TagBuilder;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTag;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.json.simple.JSONObject;
+import org.eclipse.jgit.transport.ReceiveCommand;
 import org.json.simple.JSONValue;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
-public class AnnotatedTag {
+/**
+ * A release tag. Only the version, build number and commit of a tag are kept, as many of these may be held at
+ * once. The JSON message of a tag is read as it is parsed, without building a JSON object, and a message that is
+ * not in the expected form gives version {@code 0} and build number {@code 0}.
+ * <p>
+ * The ref and commit are only unset for a tag that has been created but not yet saved, and are set when it is.
+ * </p>
+ */
+public final class AnnotatedTag {
     public static final String VERSION = "version";
     public static final String BUILD_NUMBER = "buildNumber";
     public static final String TAG_PREFIX = "refs/tags/";
     private final String name;
-    private final JSONObject message;
+    private final String version;
+    private final long buildNumber;
     private Ref ref;
-    private RevCommit tagCommit;
+    private ObjectId commitId;
 
-    private AnnotatedTag(Ref ref, RevCommit tagCommit, String name, JSONObject message) {
+    private AnnotatedTag(Ref ref, ObjectId commitId, String name, String version, long buildNumber) {
         Guard.notBlank("tag name", name);
-        Guard.notNull("tag message", message);
+        Guard.notNull("tag version", version);
         this.ref = ref;
         this.name = name;
-        this.message = message;
-        this.tagCommit = tagCommit;
+        this.version = version;
+        this.buildNumber = buildNumber;
+        this.commitId = commitId == null ? null : commitId.copy();
     }
 
+    /**
+     * @return The commit that was tagged, or null if this tag has not been saved
+     */
     public ObjectId getObjectId() {
-        return tagCommit.getId();
+        return commitId;
     }
 
     public static AnnotatedTag create(String name, String version, long buildNumber) {
-        JSONObject message = new JSONObject();
-        message.put(VERSION, version);
-        message.put(BUILD_NUMBER, String.valueOf(buildNumber));
-        return new AnnotatedTag(null, null, name, message);
+        return new AnnotatedTag(null, null, name, version, buildNumber);
     }
 
     public static AnnotatedTag fromRef(Repository repository, Ref gitTag) throws IOException, IncorrectObjectTypeException {
         Guard.notNull("gitTag", gitTag);
-
-        RevWalk walk = new RevWalk(repository);
-        JSONObject message;
-        RevCommit tagCommit;
-        try {
-            ObjectId tagId = gitTag.getObjectId();
-            RevTag tag = walk.parseTag(tagId);
-            tagCommit = walk.parseCommit(tag);
-            message = (JSONObject) JSONValue.parse(tag.getFullMessage());
-        } finally {
-            walk.dispose();
+        if (gitTag instanceof ReleaseLedger.Record) {
+            return fromLedger((ReleaseLedger.Record) gitTag, gitTag.getObjectId());
         }
-        if (message == null) {
-            message = new JSONObject();
-            message.put(VERSION, "0");
-            message.put(BUILD_NUMBER, "0");
+
+        try (RevWalk walk = new RevWalk(repository)) {
+            RevTag tag = walk.parseTag(gitTag.getObjectId());
+            RevCommit tagCommit = walk.parseCommit(tag);
+            return fromMessage(gitTag, tagCommit, tag.getFullMessage());
         }
-        return new AnnotatedTag(gitTag, tagCommit, stripRefPrefix(gitTag.getName()), message);
     }
 
-
     public static AnnotatedTag fromRefCommit(Repository repository, Ref gitTag, RevCommit commit) throws IOException, IncorrectObjectTypeException {
         Guard.notNull("gitTag", gitTag);
+        if (gitTag instanceof ReleaseLedger.Record) {
+            return fromLedger((ReleaseLedger.Record) gitTag, commit);
+        }
 
-        RevWalk walk = new RevWalk(repository);
-        JSONObject message;
+        try (RevWalk walk = new RevWalk(repository)) {
+            RevTag tag = walk.parseTag(gitTag.getObjectId());
+            return fromMessage(gitTag, commit, tag.getFullMessage());
+        }
+    }
+
+    private static AnnotatedTag fromLedger(ReleaseLedger.Record entry, ObjectId commit) {
+        return new AnnotatedTag(entry, commit, stripRefPrefix(entry.getName()), entry.version(), entry.buildNumber());
+    }
+
+    private static AnnotatedTag fromMessage(Ref gitTag, ObjectId commit, String message) {
+        MessageFields fields = new MessageFields();
         try {
-            ObjectId tagId = gitTag.getObjectId();
-            RevTag tag = walk.parseTag(tagId);
-            message = (JSONObject) JSONValue.parse(tag.getFullMessage());
-        } finally {
-            walk.dispose();
+            new JSONParser().parse(message, fields);
+        } catch (ParseException | RuntimeException e) {
+            fields = new MessageFields();
         }
-        if (message == null) {
-            message = new JSONObject();
-            message.put(VERSION, "0");
-            message.put(BUILD_NUMBER, "0");
+        long buildNumber = 0;
+        String version = "0";
+        if (fields.version != null && fields.buildNumber != null) {
+            try {
+                buildNumber = Long.parseLong(fields.buildNumber);
+                version = fields.version;
+            } catch (NumberFormatException e) {
+                // not one of our tags, so treat it like any other message
+            }
         }
-        return new AnnotatedTag(gitTag, commit, stripRefPrefix(gitTag.getName()), message);
+        return new AnnotatedTag(gitTag, commit, stripRefPrefix(gitTag.getName()), version, buildNumber);
+    }
+
+    /**
+     * @return The message stored in the tag, which is a JSON object with the version and build number
+     */
+    String message() {
+        return "{\"" + VERSION + "\":\"" + JSONValue.escape(version) + "\",\"" + BUILD_NUMBER + "\":\"" + buildNumber + "\"}";
     }
 
     static String stripRefPrefix(String refName) {
@@ -96,18 +137,74 @@ public class AnnotatedTag {
     }
 
     public String version() {
-        return String.valueOf(message.get(VERSION));
+        return version;
     }
 
     public long buildNumber() {
-        return Long.parseLong(String.valueOf(message.get(BUILD_NUMBER)));
+        return buildNumber;
     }
 
     public Ref saveAtHEAD(Git git) throws GitAPIException {
-        String json = message.toJSONString();
-        ref = git.tag().setName(name()).setAnnotated(true).setMessage(json).call();
-        tagCommit = git.log().setMaxCount(1).call().iterator().next();
-        return ref;
+        return saveAtHEAD(git, Collections.singletonList(this)).get(0);
+    }
+
+    /**
+     * Creates all of the tags on the current HEAD commit. The tag objects are written together and the refs are
+     * created in one atomic update, so either every tag is created or none are.
+     * @return The refs of the created tags, in the same order as the given tags
+     */
+    public static List<Ref> saveAtHEAD(Git git, Collection<AnnotatedTag> tags) throws GitAPIException {
+        Repository repository = git.getRepository();
+        List<Ref> refs = new ArrayList<Ref>();
+        try (RevWalk walk = new RevWalk(repository); ObjectInserter inserter = repository.newObjectInserter()) {
+            ObjectId headId = repository.resolve(Constants.HEAD);
+            if (headId == null) {
+                throw new NoHeadException("Cannot tag a repository without a HEAD commit");
+            }
+            RevCommit head = walk.parseCommit(headId);
+            PersonIdent tagger = new PersonIdent(repository);
+
+            BatchRefUpdate update = repository.getRefDatabase().newBatchUpdate();
+            update.setAtomic(true);
+            update.setRefLogIdent(tagger);
+            update.setRefLogMessage("tagged", true);
+            for (AnnotatedTag tag : tags) {
+                TagBuilder builder = new TagBuilder();
+                builder.setTag(tag.name());
+                builder.setObjectId(head);
+                builder.setTagger(tagger);
+                builder.setMessage(tag.message());
+                ObjectId tagId = inserter.insert(builder);
+                update.addCommand(new ReceiveCommand(ObjectId.zeroId(), tagId, TAG_PREFIX + tag.name(), ReceiveCommand.Type.CREATE));
+            }
+            inserter.flush();
+            update.execute(walk, NullProgressMonitor.INSTANCE);
+
+            for (ReceiveCommand command : update.getCommands()) {
+                if (command.getResult() != ReceiveCommand.Result.OK) {
+                    throw failureOf(repository, update, command);
+                }
+            }
+            for (AnnotatedTag tag : tags) {
+                tag.ref = repository.exactRef(TAG_PREFIX + tag.name());
+                tag.commitId = head.copy();
+                refs.add(tag.ref);
+            }
+        } catch (IOException e) {
+            throw new JGitInternalException("Could not create the release tags: " + e.getMessage(), e);
+        }
+        return refs;
+    }
+
+    private static GitAPIException failureOf(Repository repository, BatchRefUpdate update, ReceiveCommand failed) throws IOException {
+        // with an atomic update every command fails, so report the one that caused it where possible
+        for (ReceiveCommand command : update.getCommands()) {
+            if (repository.exactRef(command.getRefName()) != null) {
+                return new RefAlreadyExistsException("The tag " + stripRefPrefix(command.getRefName()) + " already exists");
+            }
+        }
+        String reason = failed.getMessage() == null ? failed.getResult().name() : failed.getMessage();
+        return new ConcurrentRefUpdateException("Could not create the tag " + stripRefPrefix(failed.getRefName()) + ": " + reason, null, RefUpdate.Result.LOCK_FAILURE);
     }
 
     @Override
@@ -135,4 +232,68 @@ public class AnnotatedTag {
     public Ref ref() {
         return ref;
     }
+
+    /**
+     * Picks the version and build number out of the top level of a tag message as it is parsed.
+     */
+    private static final class MessageFields implements ContentHandler {
+        private String version;
+        private String buildNumber;
+        private String key;
+        private int depth;
+
+        @Override
+        public void startJSON() {
+        }
+
+        @Override
+        public void endJSON() {
+        }
+
+        @Override
+        public boolean startObject() {
+            depth++;
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            depth--;
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) {
+            this.key = depth == 1 ? key : null;
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            key = null;
+            return true;
+        }
+
+        @Override
+        public boolean startArray() {
+            depth++;
+            return true;
+        }
+
+        @Override
+        public boolean endArray() {
+            depth--;
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) {
+            if (value != null && VERSION.equals(key)) {
+                version = String.valueOf(value);
+            } else if (value != null && BUILD_NUMBER.equals(key)) {
+                buildNumber = String.valueOf(value);
+            }
+            return true;
+        }
+    }
 }
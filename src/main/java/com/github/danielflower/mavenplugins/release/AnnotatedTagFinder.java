@@ -9,12 +9,13 @@ import java.util.Map;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.LogCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 
 class AnnotatedTagFinder {
     private VersionNamer versionNamer;
@@ -24,57 +25,55 @@ class AnnotatedTagFinder {
     }
 
     List<AnnotatedTag> tagsForVersion(Git git, String module, String versionWithoutBuildNumber) throws MojoExecutionException {
+        ReleaseTagIndex localTags;
+        try {
+            localTags = ReleaseTagIndex.of(git.getRepository(), git.tagList().call());
+        } catch (GitAPIException e) {
+            throw new MojoExecutionException("Error while getting a list of annotated tags in the local repo", e);
+        }
+        return tagsForVersion(git, localTags, module, versionWithoutBuildNumber);
+    }
+
+    List<AnnotatedTag> tagsForVersion(Git git, ReleaseTagIndex localTags, String module, String versionWithoutBuildNumber) throws MojoExecutionException {
         ArrayList<AnnotatedTag> results = new ArrayList<AnnotatedTag>();
         try {
-            ArrayList<RefWithCommitId> tagCommits = getAnnotatedTags(git, module, versionWithoutBuildNumber);
+            List<RefWithCommitId> tagCommits = localTags.tagsFor(module + "-" + versionWithoutBuildNumber, versionNamer.getDelimiter());
+            if (tagCommits.isEmpty()) {
+                // nothing to find, so don't bother walking the history
+                return results;
+            }
             Map<ObjectId, List<RefWithCommitId>> commitTags = tagCommits.stream().collect(groupingBy(
                 RefWithCommitId::getCommitObjectId));
-            Iterable<RevCommit> commits = git.log().call();
-            for (RevCommit commit : commits) {
-                if (commitTags.containsKey(commit.getId())) {
-                    for (RefWithCommitId tag : commitTags.get(commit.getId())) {
+            Repository repository = git.getRepository();
+            ObjectId head = repository.resolve(Constants.HEAD);
+            if (head == null) {
+                return results;
+            }
+            try (RevWalk walk = new RevWalk(repository)) {
+                walk.setRetainBody(false);
+                walk.markStart(walk.parseCommit(head));
+                for (RevCommit commit : walk) {
+                    if (commitTags.containsKey(commit.getId())) {
+                        for (RefWithCommitId tag : commitTags.get(commit.getId())) {
                             try {
-                                results.add(AnnotatedTag.fromRefCommit(git.getRepository(), tag.getRef(), commit));
+                                results.add(AnnotatedTag.fromRefCommit(repository, tag.getRef(), commit));
                             } catch (IncorrectObjectTypeException ignored) {
                                 // not actually a tag, so skip it.
                             } catch (IOException e) {
                                 throw new MojoExecutionException("Error while looking up tag " + tag, e);
                             }
+                        }
+                        // we want the version of the latest commit so we stop here
+                        break;
                     }
-                    // we want the version of the latest commit so we stop here
-                    break;
                 }
             }
-        } catch (GitAPIException | IOException e) {
+        } catch (IOException e) {
             throw new MojoExecutionException("Error while getting a list of annotated tags in the local repo", e);
         }
         return results;
     }
 
-    private ArrayList<RefWithCommitId> getAnnotatedTags(Git git, String module, String versionWithoutBuildNumber)
-        throws GitAPIException, IOException
-    {
-        String tagWithoutBuildNumber = module + "-" + versionWithoutBuildNumber;
-        ArrayList<RefWithCommitId> allTags = new ArrayList<RefWithCommitId>();
-        List<Ref> tags = git.tagList().call();
-
-        for (Ref ref : tags) {
-            if(!isPotentiallySameVersionIgnoringBuildNumber(tagWithoutBuildNumber, ref.getName())) continue;
-
-            LogCommand log = git.log();
-
-            Ref peeledRef = git.getRepository().getRefDatabase().peel(ref);
-            if(peeledRef.getPeeledObjectId() != null) {
-                log.add(peeledRef.getPeeledObjectId());
-            } else {
-                log.add(ref.getObjectId());
-            }
-            RevCommit commit = log.call().iterator().next();
-            allTags.add(new RefWithCommitId(ref, commit.getId()));
-        }
-        return allTags;
-    }
-
     boolean isPotentiallySameVersionIgnoringBuildNumber(String versionWithoutBuildNumber, String refName) {
         return buildNumberOf(versionWithoutBuildNumber, refName) != null;
     }
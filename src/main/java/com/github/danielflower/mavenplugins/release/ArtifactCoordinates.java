@@ -0,0 +1,63 @@
+package com.github.danielflower.mavenplugins.release;
+
+import java.util.Objects;
+
+/**
+ * The groupId, artifactId, version and type of an artifact that may be in a repository.
+ */
+public final class ArtifactCoordinates {
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+    private final String type;
+
+    public ArtifactCoordinates(String groupId, String artifactId, String version, String type) {
+        Guard.notBlank("groupId", groupId);
+        Guard.notBlank("artifactId", artifactId);
+        Guard.notBlank("version", version);
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.type = type;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * The packaging of the artifact, e.g. "jar" or "pom"
+     */
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ArtifactCoordinates that = (ArtifactCoordinates) o;
+        return groupId.equals(that.groupId)
+            && artifactId.equals(that.artifactId)
+            && version.equals(that.version)
+            && Objects.equals(type, that.type);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(groupId, artifactId, version, type);
+    }
+
+    @Override
+    public String toString() {
+        return groupId + ":" + artifactId + ":" + type + ":" + version;
+    }
+}
@@ -1,8 +1,5 @@
 package com.github.danielflower.mavenplugins.release;
 
-import org.apache.maven.artifact.factory.ArtifactFactory;
-import org.apache.maven.artifact.repository.ArtifactRepository;
-import org.apache.maven.artifact.resolver.ArtifactResolver;
 import org.apache.maven.model.Scm;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -12,10 +9,14 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.settings.Server;
 import org.apache.maven.settings.Settings;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.JschConfigSessionFactory;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.lang.String.format;
@@ -84,29 +85,33 @@ public abstract class BaseMojo extends AbstractMojo {
     protected NoChangesAction noChangesAction;
 
     /**
-     * Used to look up Artifacts in the remote repository.
+     * Determines how releases are recorded in Git. Possible values: {@code Tags} to create an annotated tag for
+     * each released module, {@code Ledger} to record all of the releases on the single ref
+     * {@code refs/releases/ledger} instead, or {@code TagsAndLedger} for both. A ledger keeps the number of refs
+     * down in repositories with many modules and releases.
      */
-    @Component
-    protected ArtifactFactory factory;
+    @Parameter(alias = "releaseStorage", defaultValue = "Tags", property = "releaseStorage")
+    protected ReleaseStorage releaseStorage;
 
     /**
-     * Used to look up Artifacts in the remote repository.
+     * The number of threads used to look up the previous releases of the modules, to check whether they can
+     * still be resolved, and to rewrite their POMs with the release versions. Defaults to the number of available
+     * processors.
      */
-    @Component
-    protected ArtifactResolver artifactResolver;
+    @Parameter(alias = "analysisThreads", property = "analysisThreads", defaultValue = "0")
+    protected int analysisThreads;
 
     /**
-     * List of Remote Repositories used by the resolver
+     * Used to check whether previously released artifacts exist without downloading them.
      */
-    @Parameter(property = "remoteRepositories", required = true, readonly = true, defaultValue = "${project.remoteArtifactRepositories}")
-    protected List remoteRepositories;
+    @Component
+    protected RepositorySystem repositorySystem;
 
-    /**
-     * Location of the local repository.
-     *
-     */
-    @Parameter(property = "localRepository", required = true, readonly = true, defaultValue = "${localRepository}")
-    protected ArtifactRepository localRepository;
+    @Parameter(defaultValue = "${repositorySystemSession}", required = true, readonly = true)
+    protected RepositorySystemSession repositorySystemSession;
+
+    @Parameter(defaultValue = "${project.remoteProjectRepositories}", required = true, readonly = true)
+    protected List<RemoteRepository> remoteProjectRepositories;
 
 	@Parameter(property = "disableSshAgent")
 	private boolean disableSshAgent;
@@ -161,6 +166,34 @@ public abstract class BaseMojo extends AbstractMojo {
     @Parameter(property = "arguments")
     public String arguments;
 
+    /**
+     * @return A resolver that checks whether artifacts exist in the local or remote repositories, remembering the
+     * answers for the rest of the run
+     */
+    protected Resolver newResolver() {
+        Resolver resolver = new ExistenceCheckingResolver(repositorySystem, repositorySystemSession, remoteProjectRepositories);
+        PublishedArtifactLedger ledger = publishedArtifactLedger();
+        if (ledger != null) {
+            List<String> repositoryUrls = new ArrayList<String>();
+            for (RemoteRepository repository : remoteProjectRepositories) {
+                repositoryUrls.add(repository.getUrl());
+            }
+            resolver = new LedgerResolver(resolver, ledger, repositoryUrls);
+        }
+        return new CachingResolver(resolver, analysisThreads);
+    }
+
+    /**
+     * @return The ledger of artifacts known to be published, kept in the local Maven repository, or null if there
+     * is no local repository
+     */
+    protected PublishedArtifactLedger publishedArtifactLedger() {
+        if (repositorySystemSession == null || repositorySystemSession.getLocalRepository() == null) {
+            return null;
+        }
+        return PublishedArtifactLedger.inLocalRepository(repositorySystemSession.getLocalRepository().getBasedir());
+    }
+
     final void setSettings(final Settings settings) {
 		this.settings = settings;
 	}
@@ -0,0 +1,178 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Remembers the answers of another {@link DiffDetector} in a file, so that running the plugin again on the same
+ * commit (for example when a CI build is retried) does not need to walk the history again.
+ * <p>
+ * Answers are keyed by the HEAD commit, the commits the tags point to, the module path and the child modules, all
+ * of which are immutable for a given answer, so entries never need invalidating. Only the most recently used
+ * {@link #DEFAULT_MAX_ENTRIES} entries are kept.
+ * </p>
+ */
+public class CachingDiffDetector implements DiffDetector {
+
+    static final int DEFAULT_MAX_ENTRIES = 5000;
+
+    private final Repository repo;
+    private final DiffDetector delegate;
+    private final File cacheFile;
+    private final int maxEntries;
+    private Map<String, Boolean> entries;
+
+    public CachingDiffDetector(Repository repo, DiffDetector delegate, File cacheFile, int maxEntries) {
+        Guard.notNull("repo", repo);
+        Guard.notNull("delegate", delegate);
+        Guard.notNull("cacheFile", cacheFile);
+        this.repo = repo;
+        this.delegate = delegate;
+        this.cacheFile = cacheFile;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Creates a cache stored in the {@code multi-module-release} directory of the repository's git directory.
+     */
+    public static CachingDiffDetector inGitDirectory(Repository repo, DiffDetector delegate) {
+        File cacheFile = new File(new File(repo.getDirectory(), "multi-module-release"), "change-detection-cache");
+        return new CachingDiffDetector(repo, delegate, cacheFile, DEFAULT_MAX_ENTRIES);
+    }
+
+    @Override
+    public boolean hasChangedSince(String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) throws IOException {
+        return changedModules(Collections.singletonList(new ModuleSinceTags(modulePath, childModules, tags))).contains(modulePath);
+    }
+
+    @Override
+    public synchronized Set<String> changedModules(Collection<ModuleSinceTags> modules) throws IOException {
+        Map<String, Boolean> cache = entries();
+        ObjectId head = repo.resolve(Constants.HEAD);
+        Set<String> changed = new HashSet<>();
+        Map<ModuleSinceTags, String> misses = new LinkedHashMap<>();
+        for (ModuleSinceTags module : modules) {
+            String key = keyFor(head, module);
+            Boolean moduleChanged = cache.get(key);
+            if (moduleChanged == null) {
+                misses.put(module, key);
+            } else if (moduleChanged) {
+                changed.add(module.getModulePath());
+            }
+        }
+        if (misses.isEmpty()) {
+            return changed;
+        }
+
+        Set<String> changedMisses = delegate.changedModules(misses.keySet());
+        for (Map.Entry<ModuleSinceTags, String> miss : misses.entrySet()) {
+            boolean moduleChanged = changedMisses.contains(miss.getKey().getModulePath());
+            cache.put(miss.getValue(), moduleChanged);
+            if (moduleChanged) {
+                changed.add(miss.getKey().getModulePath());
+            }
+        }
+        save(cache);
+        return changed;
+    }
+
+    private static String keyFor(ObjectId head, ModuleSinceTags module) {
+        Set<String> tagCommits = new TreeSet<>();
+        for (AnnotatedTag tag : module.getTags()) {
+            tagCommits.add(tag.getObjectId().name());
+        }
+        StringBuilder key = new StringBuilder();
+        key.append(head == null ? "" : head.name()).append('\n');
+        key.append(String.join(",", tagCommits)).append('\n');
+        key.append(module.getModulePath()).append('\n');
+        key.append(String.join("\n", new TreeSet<>(module.getChildModules())));
+        return sha1(key.toString());
+    }
+
+    private static String sha1(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return ObjectId.fromRaw(digest.digest(value.getBytes(StandardCharsets.UTF_8))).name();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    private Map<String, Boolean> entries() {
+        if (entries == null) {
+            entries = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+            load(entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the entries from least to most recently used. A missing or unreadable file just means an empty cache.
+     */
+    private void load(Map<String, Boolean> cache) {
+        if (!cacheFile.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length == 2 && ObjectId.isId(parts[0])) {
+                    cache.put(parts[0], Boolean.valueOf(parts[1]));
+                }
+            }
+        } catch (IOException e) {
+            cache.clear();
+        }
+    }
+
+    private void save(Map<String, Boolean> cache) throws IOException {
+        File dir = cacheFile.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir.getCanonicalPath());
+        }
+        List<Map.Entry<String, Boolean>> inUseOrder = new ArrayList<>(cache.entrySet());
+        File temp = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Boolean> entry : inUseOrder) {
+                    writer.write(entry.getKey() + " " + entry.getValue());
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+}
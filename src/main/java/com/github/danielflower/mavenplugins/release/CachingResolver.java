@@ -0,0 +1,97 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Remembers the answers of another {@link Resolver} for the rest of the run, so no artifact is looked up twice,
+ * and looks up batches of artifacts on several threads at once.
+ */
+public class CachingResolver implements Resolver {
+
+    private final Resolver delegate;
+    private final int threads;
+    private final ConcurrentMap<ArtifactCoordinates, Boolean> answers = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate The resolver that does the actual looking up. It must be safe to call from several threads.
+     * @param threads The most artifacts to look up at once, or 0 for one per available processor
+     */
+    public CachingResolver(Resolver delegate, int threads) {
+        Guard.notNull("delegate", delegate);
+        this.delegate = delegate;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public boolean isResolvable(String groupId, String artifactId, String version, String type, Log log) {
+        return isResolvable(new ArtifactCoordinates(groupId, artifactId, version, type), log);
+    }
+
+    private boolean isResolvable(ArtifactCoordinates artifact, Log log) {
+        Boolean answer = answers.get(artifact);
+        if (answer == null) {
+            answer = delegate.isResolvable(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getType(), log);
+            answers.putIfAbsent(artifact, answer);
+        }
+        return answer;
+    }
+
+    @Override
+    public Set<ArtifactCoordinates> resolvable(Collection<ArtifactCoordinates> artifacts, Log log) {
+        List<ArtifactCoordinates> unknown = new ArrayList<>();
+        for (ArtifactCoordinates artifact : new LinkedHashSet<>(artifacts)) {
+            if (!answers.containsKey(artifact)) {
+                unknown.add(artifact);
+            }
+        }
+        if (unknown.size() > 1 && threads > 1) {
+            lookUpConcurrently(unknown, log);
+        }
+
+        Set<ArtifactCoordinates> resolvable = new LinkedHashSet<>();
+        for (ArtifactCoordinates artifact : artifacts) {
+            if (isResolvable(artifact, log)) {
+                resolvable.add(artifact);
+            }
+        }
+        return resolvable;
+    }
+
+    /**
+     * Fills in the answers for the given artifacts. Any that are not answered because the thread is interrupted are
+     * left for the caller to look up.
+     */
+    private void lookUpConcurrently(List<ArtifactCoordinates> artifacts, Log log) {
+        ExecutorService executor = DaemonExecutors.fixed("release-resolver", Math.min(threads, artifacts.size()));
+        try {
+            List<Callable<Boolean>> lookups = new ArrayList<>();
+            for (final ArtifactCoordinates artifact : artifacts) {
+                lookups.add(() -> isResolvable(artifact, log));
+            }
+            for (Future<Boolean> lookup : executor.invokeAll(lookups)) {
+                lookup.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Error while checking whether artifacts can be resolved", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.danielflower.mavenplugins.release;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pools for the work the plugin does in parallel. Their threads are daemon threads so that a pool that is
+ * not shut down, for example because the build was interrupted, does not stop Maven from exiting.
+ */
+final class DaemonExecutors {
+
+    private DaemonExecutors() {
+    }
+
+    /**
+     * @param name    The start of the name of each thread, which is followed by the number of the thread
+     * @param threads The number of threads in the pool
+     */
+    static ExecutorService fixed(String name, int threads) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -2,8 +2,25 @@ package com.github.danielflower.mavenplugins.release;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public interface DiffDetector {
     boolean hasChangedSince(String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) throws IOException;
+
+    /**
+     * Works out which of the given modules have changed since their tags. Implementations may override this to
+     * answer for the whole reactor more cheaply than asking about each module in turn.
+     * @return The paths of the modules that have changed
+     */
+    default Set<String> changedModules(Collection<ModuleSinceTags> modules) throws IOException {
+        Set<String> changed = new HashSet<>();
+        for (ModuleSinceTags module : modules) {
+            if (hasChangedSince(module.getModulePath(), module.getChildModules(), module.getTags())) {
+                changed.add(module.getModulePath());
+            }
+        }
+        return changed;
+    }
 }
@@ -0,0 +1,128 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.IndexDiffFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds files in the working tree that differ from HEAD, in a single walk over HEAD, the index and the working
+ * tree.
+ * <p>
+ * Unlike {@code git status}, only the given paths are walked and the ignored untracked paths are filtered out as
+ * they are reached, so their contents are never listed. Files are only read when the timestamps and sizes in the
+ * index say they may have changed, and the walk stops as soon as enough dirty paths have been found.
+ * </p>
+ */
+final class DirtyPathFinder {
+
+    private static final int HEAD = 0;
+    private static final int INDEX = 1;
+    private static final int WORKING_TREE = 2;
+
+    private final Repository repository;
+    private final Set<String> ignoredUntrackedPaths;
+    private final Collection<String> pathsToCheck;
+
+    /**
+     * @param ignoredUntrackedPaths Untracked files or directories that do not make the working tree dirty
+     * @param pathsToCheck The directories to check, relative to the working tree, where an empty path is the
+     *                     whole working tree
+     */
+    DirtyPathFinder(Repository repository, Set<String> ignoredUntrackedPaths, Collection<String> pathsToCheck) {
+        this.repository = repository;
+        this.ignoredUntrackedPaths = new HashSet<String>(ignoredUntrackedPaths);
+        this.pathsToCheck = new ArrayList<String>(pathsToCheck);
+    }
+
+    boolean isClean() throws IOException {
+        return find(1).isEmpty();
+    }
+
+    /**
+     * @param limit The most dirty paths to find before stopping
+     */
+    List<DirtyPath> find(int limit) throws IOException {
+        List<DirtyPath> dirty = new ArrayList<DirtyPath>();
+        try (TreeWalk walk = new TreeWalk(repository)) {
+            ObjectId headTree = repository.resolve(Constants.HEAD + "^{tree}");
+            if (headTree == null) {
+                walk.addTree(new EmptyTreeIterator());
+            } else {
+                walk.addTree(headTree);
+            }
+            walk.addTree(new DirCacheIterator(repository.readDirCache()));
+            walk.addTree(new FileTreeIterator(repository));
+            walk.setRecursive(true);
+
+            List<TreeFilter> filters = new ArrayList<TreeFilter>();
+            if (!pathsToCheck.isEmpty() && !pathsToCheck.contains("")) {
+                filters.add(PathFilterGroup.createFromStrings(pathsToCheck));
+            }
+            if (!ignoredUntrackedPaths.isEmpty()) {
+                filters.add(new SkipIgnoredUntrackedPaths(ignoredUntrackedPaths));
+            }
+            filters.add(new IndexDiffFilter(INDEX, WORKING_TREE));
+            walk.setFilter(filters.size() == 1 ? filters.get(0) : AndTreeFilter.create(filters));
+
+            while (dirty.size() < limit && walk.next()) {
+                boolean untracked = walk.getRawMode(HEAD) == 0 && walk.getRawMode(INDEX) == 0;
+                dirty.add(new DirtyPath(walk.getPathString(), untracked));
+            }
+        }
+        return dirty;
+    }
+
+    static final class DirtyPath {
+        final String path;
+        final boolean untracked;
+
+        DirtyPath(String path, boolean untracked) {
+            this.path = path;
+            this.untracked = untracked;
+        }
+    }
+
+    /**
+     * Leaves out files and directories that are in neither HEAD nor the index and are in the ignored set, without
+     * entering the directories.
+     */
+    private static final class SkipIgnoredUntrackedPaths extends TreeFilter {
+        private final Set<String> ignored;
+
+        private SkipIgnoredUntrackedPaths(Set<String> ignored) {
+            this.ignored = ignored;
+        }
+
+        @Override
+        public boolean include(TreeWalk walk) throws MissingObjectException, IncorrectObjectTypeException, IOException {
+            return walk.getRawMode(HEAD) != 0 || walk.getRawMode(INDEX) != 0 || !ignored.contains(walk.getPathString());
+        }
+
+        @Override
+        public boolean shouldBeRecursive() {
+            return false;
+        }
+
+        @Override
+        public TreeFilter clone() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.ArtifactType;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.ArtifactRepository;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.eclipse.aether.repository.LocalArtifactResult;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.VersionRangeRequest;
+import org.eclipse.aether.resolution.VersionRangeResolutionException;
+import org.eclipse.aether.resolution.VersionRangeResult;
+
+import java.util.List;
+
+/**
+ * Checks whether a released artifact exists without downloading it.
+ * <p>
+ * The local repository is checked first. After that, the version is looked for in the {@code maven-metadata.xml}
+ * of the remote repositories, which lists every deployed version of an artifact and is shared by all of them. Only
+ * if the version is not listed there (for example because the cached metadata is older than the release) is the
+ * POM of the artifact downloaded, which is much smaller than most packaged artifacts.
+ * </p>
+ * <p>
+ * {@link #locate(ArtifactCoordinates, Log)} also says which remote repository the artifact was found in. An
+ * artifact that was installed into the local repository but not downloaded from a remote one is resolvable, but
+ * not located in a remote repository.
+ * </p>
+ */
+public class ExistenceCheckingResolver implements Resolver {
+
+    private final RepositorySystem repositorySystem;
+    private final RepositorySystemSession session;
+    private final List<RemoteRepository> remoteRepositories;
+
+    public ExistenceCheckingResolver(RepositorySystem repositorySystem, RepositorySystemSession session, List<RemoteRepository> remoteRepositories) {
+        Guard.notNull("repositorySystem", repositorySystem);
+        Guard.notNull("session", session);
+        Guard.notNull("remoteRepositories", remoteRepositories);
+        this.repositorySystem = repositorySystem;
+        this.session = session;
+        this.remoteRepositories = remoteRepositories;
+    }
+
+    @Override
+    public boolean isResolvable(String groupId, String artifactId, String version, String type, Log log) {
+        return locate(new ArtifactCoordinates(groupId, artifactId, version, type), log) != null;
+    }
+
+    @Override
+    public String locate(ArtifactCoordinates coordinates, Log log) {
+        String groupId = coordinates.getGroupId();
+        String artifactId = coordinates.getArtifactId();
+        String version = coordinates.getVersion();
+        Artifact artifact = new DefaultArtifact(groupId, artifactId, "", extensionOf(coordinates.getType()), version);
+        LocalArtifactResult local = session.getLocalRepositoryManager().find(session, new LocalArtifactRequest(artifact, remoteRepositories, null));
+        if (local.isAvailable()) {
+            // the repository it was downloaded from, or null if it was installed
+            return local.getRepository() == null ? LOCAL_REPOSITORY : urlOf(local.getRepository());
+        }
+
+        try {
+            Artifact range = new DefaultArtifact(groupId, artifactId, "", "pom", "[" + version + "]");
+            VersionRangeResult versions = repositorySystem.resolveVersionRange(session, new VersionRangeRequest(range, remoteRepositories, null));
+            if (!versions.getVersions().isEmpty()) {
+                return urlOf(versions.getRepository(versions.getVersions().get(0)));
+            }
+        } catch (VersionRangeResolutionException e) {
+            log.debug("can't read the metadata of " + groupId + ":" + artifactId + ": " + e.getMessage());
+        }
+
+        try {
+            Artifact pom = new DefaultArtifact(groupId, artifactId, "", "pom", version);
+            return urlOf(repositorySystem.resolveArtifact(session, new ArtifactRequest(pom, remoteRepositories, null)).getRepository());
+        } catch (ArtifactResolutionException e) {
+            log.info("can't resolve artifact: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Versions that were installed are listed in the local repository's metadata, and a POM that was installed is
+     * resolved from the local repository, so only a remote repository counts as somewhere the artifact is published.
+     */
+    private static String urlOf(ArtifactRepository repository) {
+        return repository instanceof RemoteRepository ? ((RemoteRepository) repository).getUrl() : LOCAL_REPOSITORY;
+    }
+
+    private String extensionOf(String type) {
+        if (type == null) {
+            return "jar";
+        }
+        ArtifactType artifactType = session.getArtifactTypeRegistry() == null ? null : session.getArtifactTypeRegistry().get(type);
+        return artifactType == null ? type : artifactType.getExtension();
+    }
+}
@@ -9,7 +9,11 @@ import java.util.List;
 
 public class GitHelper {
     public static boolean hasLocalTag(Git repo, String tagToCheck) throws GitAPIException {
-        return tag(repo, new EqualsMatcher(tagToCheck)) != null;
+        return hasLocalTag(ReleaseTagIndex.of(repo.getRepository(), repo.tagList().call()), tagToCheck);
+    }
+
+    public static boolean hasLocalTag(ReleaseTagIndex localTags, String tagToCheck) {
+        return localTags.hasTag(tagToCheck);
     }
 
     public static Ref refStartingWith(Git repo, final String tagPrefix) throws GitAPIException {
@@ -48,17 +52,4 @@ public class GitHelper {
     private interface Matcher {
         public boolean matches(String tagName);
     }
-
-    private static class EqualsMatcher implements Matcher {
-        private final String tagToCheck;
-
-        public EqualsMatcher(String tagToCheck) {
-            this.tagToCheck = tagToCheck;
-        }
-
-        @Override
-        public boolean matches(String tagName) {
-            return tagToCheck.equals(tagName);
-        }
-    }
 }
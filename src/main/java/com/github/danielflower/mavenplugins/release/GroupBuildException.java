@@ -0,0 +1,30 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when the release builds of some groups of independent modules failed, with the modules of the groups
+ * whose builds succeeded, as those have been deployed.
+ */
+public class GroupBuildException extends MojoExecutionException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<String> builtModules;
+
+    public GroupBuildException(String message, List<String> builtModules, Throwable cause) {
+        super(message, cause);
+        this.builtModules = new ArrayList<String>(builtModules);
+    }
+
+    /**
+     * @return The paths, relative to the working tree, of the modules whose builds succeeded
+     */
+    public List<String> getBuiltModules() {
+        return Collections.unmodifiableList(builtModules);
+    }
+}
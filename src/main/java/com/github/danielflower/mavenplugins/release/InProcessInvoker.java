@@ -0,0 +1,225 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.Maven;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.LegacySupport;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.apache.maven.shared.invoker.Invoker;
+import org.apache.maven.shared.invoker.InvokerLogger;
+import org.apache.maven.shared.invoker.MavenInvocationException;
+import org.apache.maven.shared.utils.cli.CommandLineException;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Runs the release build in the Maven process that is running the plugin, through the session's {@link Maven}
+ * component, so that no new JVM has to start and load Maven.
+ * <p>
+ * The goals of the invocation request may contain {@code -Dname=value} and {@code -Pprofiles} options, as the
+ * release goals and arguments can, and these are applied to the new execution request. Other command line options
+ * cannot be applied in process and are rejected. The settings of the current session are used.
+ * </p>
+ */
+class InProcessInvoker implements Invoker {
+
+    private final Log log;
+    private final Maven maven;
+    private final MavenSession session;
+    private final LegacySupport legacySupport;
+
+    InProcessInvoker(Log log, Maven maven, MavenSession session, LegacySupport legacySupport) {
+        Guard.notNull("maven", maven);
+        Guard.notNull("session", session);
+        Guard.notNull("legacySupport", legacySupport);
+        this.log = log;
+        this.maven = maven;
+        this.session = session;
+        this.legacySupport = legacySupport;
+    }
+
+    @Override
+    public InvocationResult execute(InvocationRequest request) throws MavenInvocationException {
+        MavenExecutionRequest executionRequest = toExecutionRequest(request);
+
+        MavenSession outerSession = legacySupport.getSession();
+        ClassLoader outerClassLoader = Thread.currentThread().getContextClassLoader();
+        MavenExecutionResult result;
+        try {
+            result = maven.execute(executionRequest);
+        } finally {
+            // the nested execution replaces both, and the rest of the outer build still needs them
+            legacySupport.setSession(outerSession);
+            Thread.currentThread().setContextClassLoader(outerClassLoader);
+        }
+
+        if (!result.hasExceptions()) {
+            return exitCode(0);
+        }
+        for (Throwable exception : result.getExceptions()) {
+            log.error("The release build failed: " + exception.getMessage(), exception);
+        }
+        return exitCode(1);
+    }
+
+    MavenExecutionRequest toExecutionRequest(InvocationRequest request) throws MavenInvocationException {
+        MavenExecutionRequest outer = session.getRequest();
+        List<String> goals = new ArrayList<String>();
+        List<String> profiles = new ArrayList<String>();
+        Properties userProperties = new Properties();
+        userProperties.putAll(outer.getUserProperties());
+
+        if (request.getProfiles() != null) {
+            profiles.addAll(request.getProfiles());
+        }
+        for (String goal : request.getGoals()) {
+            for (String token : goal.trim().split("\\s+")) {
+                if (token.isEmpty()) {
+                    continue;
+                }
+                if (token.startsWith("-D") && token.length() > 2) {
+                    String property = token.substring(2);
+                    int equals = property.indexOf('=');
+                    if (equals < 0) {
+                        userProperties.setProperty(property, "true");
+                    } else {
+                        userProperties.setProperty(property.substring(0, equals), property.substring(equals + 1));
+                    }
+                } else if (token.startsWith("-P") && token.length() > 2) {
+                    Collections.addAll(profiles, token.substring(2).split(","));
+                } else if (token.startsWith("-")) {
+                    throw new MavenInvocationException("The option " + token + " cannot be used when the release build runs in process");
+                } else {
+                    goals.add(token);
+                }
+            }
+        }
+        if (request.getProperties() != null) {
+            userProperties.putAll(request.getProperties());
+        }
+
+        MavenExecutionRequest executionRequest = DefaultMavenExecutionRequest.copy(outer);
+        executionRequest.setGoals(goals);
+        executionRequest.setActiveProfiles(profiles);
+        executionRequest.setUserProperties(userProperties);
+        executionRequest.setSelectedProjects(request.getProjects() == null ? new ArrayList<String>() : new ArrayList<String>(request.getProjects()));
+        executionRequest.setExcludedProjects(new ArrayList<String>());
+        executionRequest.setResumeFrom(null);
+        executionRequest.setMakeBehavior(request.isAlsoMake() ? MavenExecutionRequest.REACTOR_MAKE_UPSTREAM : null);
+        executionRequest.setInteractiveMode(!request.isBatchMode());
+        executionRequest.setShowErrors(request.isShowErrors());
+        if (request.getThreads() != null) {
+            int degreeOfConcurrency = degreeOfConcurrency(request.getThreads());
+            executionRequest.setDegreeOfConcurrency(degreeOfConcurrency);
+            executionRequest.setBuilderId(degreeOfConcurrency > 1 ? "multithreaded" : "singlethreaded");
+        }
+        return executionRequest;
+    }
+
+    /**
+     * @param threads A <code>-T</code> option, which is a number of threads, or a number of threads per processor
+     *                when it ends with <code>C</code>
+     */
+    private static int degreeOfConcurrency(String threads) throws MavenInvocationException {
+        try {
+            if (threads.endsWith("C")) {
+                float perProcessor = Float.parseFloat(threads.substring(0, threads.length() - 1));
+                return Math.max(1, (int) (perProcessor * Runtime.getRuntime().availableProcessors()));
+            }
+            return Math.max(1, Integer.parseInt(threads));
+        } catch (NumberFormatException e) {
+            throw new MavenInvocationException("Invalid number of threads for the release build: " + threads);
+        }
+    }
+
+    private static InvocationResult exitCode(final int exitCode) {
+        return new InvocationResult() {
+            @Override
+            public CommandLineException getExecutionException() {
+                return null;
+            }
+
+            @Override
+            public int getExitCode() {
+                return exitCode;
+            }
+        };
+    }
+
+    // The rest of the Invoker interface describes a Maven installation to fork, which does not apply here
+
+    @Override
+    public File getLocalRepositoryDirectory() {
+        return null;
+    }
+
+    @Override
+    public File getWorkingDirectory() {
+        return null;
+    }
+
+    @Override
+    public InvokerLogger getLogger() {
+        return null;
+    }
+
+    @Override
+    public File getMavenHome() {
+        return null;
+    }
+
+    @Override
+    public Invoker setMavenHome(File mavenHome) {
+        return this;
+    }
+
+    @Override
+    public File getMavenExecutable() {
+        return null;
+    }
+
+    @Override
+    public Invoker setMavenExecutable(File mavenExecutable) {
+        return this;
+    }
+
+    @Override
+    public Invoker setLocalRepositoryDirectory(File localRepositoryDirectory) {
+        return this;
+    }
+
+    @Override
+    public Invoker setLogger(InvokerLogger logger) {
+        return this;
+    }
+
+    @Override
+    public Invoker setWorkingDirectory(File workingDirectory) {
+        return this;
+    }
+
+    @Override
+    public Invoker setInputStream(InputStream inputStream) {
+        return this;
+    }
+
+    @Override
+    public Invoker setOutputHandler(InvocationOutputHandler outputHandler) {
+        return this;
+    }
+
+    @Override
+    public Invoker setErrorHandler(InvocationOutputHandler errorHandler) {
+        return this;
+    }
+}
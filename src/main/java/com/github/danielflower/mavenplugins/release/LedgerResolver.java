@@ -0,0 +1,85 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Answers from a {@link PublishedArtifactLedger} when it can, and otherwise asks another {@link Resolver} and
+ * records the artifacts it finds in a remote repository. Artifacts that are only in the local repository are
+ * resolvable but not recorded, as they may never have been deployed. Problems reading or writing the ledger are
+ * logged and the other resolver is used.
+ */
+public class LedgerResolver implements Resolver {
+
+    private final Resolver delegate;
+    private final PublishedArtifactLedger ledger;
+    private final List<String> repositoryUrls;
+
+    /**
+     * @param repositoryUrls The URLs of the remote repositories that artifacts are resolved from. Only artifacts
+     *                       recorded as published to one of them are answered from the ledger.
+     */
+    public LedgerResolver(Resolver delegate, PublishedArtifactLedger ledger, Collection<String> repositoryUrls) {
+        Guard.notNull("delegate", delegate);
+        Guard.notNull("ledger", ledger);
+        Guard.notNull("repositoryUrls", repositoryUrls);
+        this.delegate = delegate;
+        this.ledger = ledger;
+        this.repositoryUrls = new ArrayList<>(repositoryUrls);
+    }
+
+    @Override
+    public boolean isResolvable(String groupId, String artifactId, String version, String type, Log log) {
+        ArtifactCoordinates artifact = new ArtifactCoordinates(groupId, artifactId, version, type);
+        return resolvable(Collections.singletonList(artifact), log).contains(artifact);
+    }
+
+    @Override
+    public String locate(ArtifactCoordinates artifact, Log log) {
+        String recorded = recordedRepositoryOf(artifact, log);
+        return recorded != null ? recorded : locateAndRecord(artifact, log);
+    }
+
+    @Override
+    public Set<ArtifactCoordinates> resolvable(Collection<ArtifactCoordinates> artifacts, Log log) {
+        Set<ArtifactCoordinates> resolvable = new LinkedHashSet<>();
+        for (ArtifactCoordinates artifact : artifacts) {
+            if (locate(artifact, log) != null) {
+                resolvable.add(artifact);
+            }
+        }
+        return resolvable;
+    }
+
+    private String locateAndRecord(ArtifactCoordinates artifact, Log log) {
+        String location = delegate.locate(artifact, log);
+        if (location != null && !LOCAL_REPOSITORY.equals(location)) {
+            try {
+                ledger.add(location, Collections.singletonList(artifact));
+            } catch (IOException e) {
+                log.warn("Could not record published artifacts: " + e.getMessage());
+            }
+        }
+        return location;
+    }
+
+    private String recordedRepositoryOf(ArtifactCoordinates artifact, Log log) {
+        try {
+            for (String repositoryUrl : repositoryUrls) {
+                if (ledger.contains(repositoryUrl, artifact)) {
+                    return repositoryUrl;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not read the published artifacts ledger: " + e.getMessage());
+        }
+        return null;
+    }
+}
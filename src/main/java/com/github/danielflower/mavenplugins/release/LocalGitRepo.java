@@ -2,18 +2,33 @@ package com.github.danielflower.mavenplugins.release;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.LsRemoteCommand;
-import org.eclipse.jgit.api.PushCommand;
-import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.ConcurrentRefUpdateException;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.JGitInternalException;
+import org.eclipse.jgit.api.errors.NoHeadException;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.FetchConnection;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.eclipse.jgit.transport.TagOpt;
+import org.eclipse.jgit.transport.TrackingRefUpdate;
+import org.eclipse.jgit.transport.Transport;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.util.*;
 
 import static com.github.danielflower.mavenplugins.release.FileUtils.pathOf;
@@ -22,9 +37,13 @@ public class LocalGitRepo {
 
     public final Git git;
     private boolean hasReverted = false; // A premature optimisation? In the normal case, file reverting occurs twice, which this bool prevents
-    private Collection<Ref> tags;
+    private ReleaseTagIndex localTags;
+    private ReleaseTagIndex tags;
+    private Collection<String> tagNamePrefixes;
+    private RollbackJournal rollbackJournal;
 
     private final TagFetcher tagFetcher;
+    private final TagFetcher localTagFetcher;
     private final TagPusher tagPusher;
 
     public static class Builder {
@@ -32,6 +51,8 @@ public class LocalGitRepo {
         private Set<GitOperations> operationsAllowed = EnumSet.allOf(GitOperations.class);
         private String remoteGitUrl;
         private CredentialsProvider credentialsProvider;
+        private ReleaseStorage releaseStorage = ReleaseStorage.Tags;
+        private Log log = new SystemStreamLog();
 
         /**
          * Flag for which remote Git operations are permitted. Local values will
@@ -59,6 +80,22 @@ public class LocalGitRepo {
             return this;
         }
 
+        /**
+         * Sets whether releases are recorded with tags, in the {@link ReleaseLedger}, or both.
+         */
+        public Builder releaseStorage(ReleaseStorage releaseStorage) {
+            this.releaseStorage = releaseStorage;
+            return this;
+        }
+
+        /**
+         * Sets the log that details of the remote Git operations are written to.
+         */
+        public Builder log(Log log) {
+            this.log = log;
+            return this;
+        }
+
         /**
          * Uses the current working dir to open the Git repository.
          * @throws ValidationException if anything goes wrong
@@ -90,83 +127,140 @@ public class LocalGitRepo {
 
             TagFetcher tagFetcher;
             TagPusher tagPusher;
+            boolean pullTags = operationsAllowed.contains(GitOperations.PULL_TAGS);
+            boolean pushTags = operationsAllowed.contains(GitOperations.PUSH_TAGS);
 
-            if (operationsAllowed.contains(GitOperations.PULL_TAGS)) {
-                tagFetcher = new RemoteTagFetcher(git, remoteGitUrl, credentialsProvider);
+            if (pullTags) {
+                tagFetcher = new RemoteTagFetcher(git, remoteGitUrl, credentialsProvider, log);
             } else {
                 tagFetcher = new LocalTagFetcher(git);
             }
 
-            if (operationsAllowed.contains(GitOperations.PUSH_TAGS)) {
+            if (pushTags) {
                 tagPusher = new RemoteTagPusher(git, remoteGitUrl, credentialsProvider);
             } else {
                 tagPusher = new LocalTagPusher(git);
             }
 
-            return new LocalGitRepo(git, tagFetcher, tagPusher);
+            if (!releaseStorage.usesLedger()) {
+                return new LocalGitRepo(git, tagFetcher, tagPusher);
+            }
+            boolean withTags = releaseStorage.usesTags();
+            TagFetcher localTagFetcher = new LedgerTagFetcher(git, withTags ? new LocalTagFetcher(git) : null, false, null, null);
+            tagFetcher = new LedgerTagFetcher(git, withTags ? tagFetcher : null, pullTags, remoteGitUrl, credentialsProvider);
+            tagPusher = new LedgerTagPusher(git, withTags ? tagPusher : null,
+                pushTags ? RemoteTagPusher.pushCommand(git, remoteGitUrl, credentialsProvider) : null,
+                pushTags ? new LedgerTagFetcher(git, null, true, remoteGitUrl, credentialsProvider) : null);
+            return new LocalGitRepo(git, tagFetcher, localTagFetcher, tagPusher);
         }
 
     }
 
     LocalGitRepo(Git git, TagFetcher tagFetcher, TagPusher tagPusher) {
+        this(git, tagFetcher, new LocalTagFetcher(git), tagPusher);
+    }
+
+    LocalGitRepo(Git git, TagFetcher tagFetcher, TagFetcher localTagFetcher, TagPusher tagPusher) {
         this.git = git;
         this.tagFetcher = tagFetcher;
+        this.localTagFetcher = localTagFetcher;
         this.tagPusher = tagPusher;
     }
 
     public void errorIfNotClean(Set<String> ignoredUntrackedPaths) throws ValidationException {
-        Status status = currentStatus();
-        Set<String> untracked = new HashSet<>(status.getUntracked());
-        untracked.removeAll(ignoredUntrackedPaths);
-        boolean isClean = !status.hasUncommittedChanges() && untracked.isEmpty();
-        if (!isClean) {
-            String summary = "Cannot release with uncommitted changes. Please check the following files:";
-            List<String> message = new ArrayList<String>();
-            message.add(summary);
-            Set<String> uncommittedChanges = status.getUncommittedChanges();
-            if (!uncommittedChanges.isEmpty()) {
-                message.add("Uncommitted:");
-                for (String path : uncommittedChanges) {
-                    message.add(" * " + path);
-                }
-            }
-            if (!untracked.isEmpty()) {
-                message.add("Untracked:");
-                for (String path : untracked) {
-                    message.add(" * " + path);
-                }
+        errorIfNotClean(ignoredUntrackedPaths, Collections.singletonList(""));
+    }
+
+    /**
+     * Checks that there are no uncommitted changes or untracked files in the given directories. Only the given
+     * directories are walked, and the full list of changes is only worked out if there are any.
+     * @param ignoredUntrackedPaths Untracked files or directories that are allowed
+     * @param pathsToCheck Directories relative to the root of the working tree, such as the reactor modules. An
+     *                     empty path means the whole working tree.
+     */
+    public void errorIfNotClean(Set<String> ignoredUntrackedPaths, Collection<String> pathsToCheck) throws ValidationException {
+        DirtyPathFinder finder = new DirtyPathFinder(git.getRepository(), ignoredUntrackedPaths, pathsToCheck);
+        List<DirtyPathFinder.DirtyPath> dirtyPaths;
+        try {
+            if (finder.isClean()) {
+                return;
             }
-            message.add("Please commit or revert these changes before releasing.");
-            throw new ValidationException(summary, message);
+            dirtyPaths = finder.find(Integer.MAX_VALUE);
+        } catch (IOException e) {
+            throw new ValidationException("Error while checking if the Git repo is clean", e);
         }
+
+        String summary = "Cannot release with uncommitted changes. Please check the following files:";
+        List<String> message = new ArrayList<String>();
+        message.add(summary);
+        List<String> uncommittedChanges = new ArrayList<String>();
+        List<String> untracked = new ArrayList<String>();
+        for (DirtyPathFinder.DirtyPath dirtyPath : dirtyPaths) {
+            (dirtyPath.untracked ? untracked : uncommittedChanges).add(" * " + dirtyPath.path);
+        }
+        if (!uncommittedChanges.isEmpty()) {
+            message.add("Uncommitted:");
+            message.addAll(uncommittedChanges);
+        }
+        if (!untracked.isEmpty()) {
+            message.add("Untracked:");
+            message.addAll(untracked);
+        }
+        message.add("Please commit or revert these changes before releasing.");
+        throw new ValidationException(summary, message);
     }
 
-    private Status currentStatus() throws ValidationException {
-        Status status;
+    /**
+     * @return The journal that keeps the original contents of the files changed by the release
+     */
+    public RollbackJournal rollbackJournal() {
+        if (rollbackJournal == null) {
+            rollbackJournal = RollbackJournal.inGitDirectory(git.getRepository());
+        }
+        return rollbackJournal;
+    }
+
+    /**
+     * Puts back the files changed by an earlier release that did not finish, for example because the process was
+     * killed, so that the working tree is as it was before that release started.
+     */
+    public void revertChangesLeftByEarlierRelease(Log log) throws ValidationException {
         try {
-            status = git.status().call();
-        } catch (GitAPIException e) {
-            throw new ValidationException("Error while checking if the Git repo is clean", e);
+            if (!rollbackJournal().hasChanges()) {
+                return;
+            }
+            log.warn("An earlier release did not finish, so its changes to " + rollbackJournal().files() + " are being reverted");
+            if (rollbackJournal().revert(log)) {
+                return;
+            }
+        } catch (IOException e) {
+            log.error("Could not read the changes left by an earlier release: " + e.getMessage());
         }
-        return status;
+        String summary = "Could not revert the changes left by an earlier release";
+        throw new ValidationException(summary, Arrays.asList(summary,
+            "Please revert the changes manually and delete " + pathOf(rollbackJournal().directory())));
     }
 
+    /**
+     * Puts every file changed by the release back the way it was, using the contents kept in the
+     * {@link #rollbackJournal()} rather than Git, so files that had not been committed are not lost.
+     *
+     * @param changedFiles The files known to have been changed, only used for logging
+     * @return False if any file could not be put back
+     */
     public boolean revertChanges(Log log, List<File> changedFiles) throws MojoExecutionException {
         if (hasReverted) {
             return true;
         }
-        boolean hasErrors = false;
-//        File workTree = workingDir();
-//        for (File changedFile : changedFiles) {
-//            try {
-//                String pathRelativeToWorkingTree = Repository.stripWorkDir(workTree, changedFile);
-//                git.checkout().addPath(pathRelativeToWorkingTree).call();
-//            } catch (Exception e) {
-//                hasErrors = true;
-//                log.error("Unable to revert changes to " + changedFile + " - you may need to manually revert this file. Error was: " + e.getMessage());
-//            }
-//        }
-        hasReverted = true;
+        boolean hasErrors;
+        try {
+            log.debug("Reverting changes to " + changedFiles);
+            hasErrors = !rollbackJournal().revert(log);
+        } catch (IOException e) {
+            hasErrors = true;
+            log.error("Unable to revert changes - you may need to manually revert the changed files. Error was: " + e.getMessage());
+        }
+        hasReverted = !hasErrors;
         return !hasErrors;
     }
 
@@ -179,11 +273,12 @@ public class LocalGitRepo {
     }
 
     public boolean hasLocalTag(String tagName) throws GitAPIException {
-        return GitHelper.hasLocalTag(git, tagName);
+        return GitHelper.hasLocalTag(localTagIndex(), tagName);
     }
 
     public void tagAndPushRepo(Collection<AnnotatedTag> tags) throws GitAPIException {
         tagPusher.pushTags(tags);
+        localTags = null;
     }
 
     private static File getGitRootIfItExistsInOneOfTheParentDirectories(File candidateDir) {
@@ -206,29 +301,60 @@ public class LocalGitRepo {
 
     public List<String> getTags(List<String> tagNamesToSearchFor) throws GitAPIException {
         List<String> results = new ArrayList<String>();
-        Collection<Ref> remoteTags = allTags();
-        for (Ref remoteTag : remoteTags) {
-            for (String proposedTag : tagNamesToSearchFor) {
-                if (remoteTag.getName().equals("refs/tags/" + proposedTag)) {
-                    results.add(proposedTag);
-                }
+        ReleaseTagIndex remoteTags = allTagIndex();
+        for (String proposedTag : tagNamesToSearchFor) {
+            if (remoteTags.hasTag(proposedTag)) {
+                results.add(proposedTag);
             }
         }
         return results;
     }
 
     public Collection<Ref> allTags() throws GitAPIException {
+        return allTagIndex().refs();
+    }
+
+    /**
+     * Limits the tags returned by {@link #allTagIndex()} to those with names starting with one of the given
+     * prefixes, so that a remote with many unrelated tags does not have to list all of them. This has no effect if
+     * the tags have already been fetched.
+     * @param tagNamePrefixes The start of the tag names, such as {@code artifactId-businessVersion}
+     */
+    public void limitTagsTo(Collection<String> tagNamePrefixes) {
+        this.tagNamePrefixes = new ArrayList<String>(tagNamePrefixes);
+    }
+
+    /**
+     * @return An index of the tags fetched by the configured {@link TagFetcher}, which are the remote tags
+     * unless pulling tags has been disabled. The tags are only fetched once.
+     */
+    public ReleaseTagIndex allTagIndex() throws GitAPIException {
         if (tags == null) {
-            tags = this.tagFetcher.getTags();
+            tags = ReleaseTagIndex.of(git.getRepository(), this.tagFetcher.getTags(tagNamePrefixes));
         }
-
         return tags;
     }
+
+    /**
+     * @return An index of the tags in the local repository, or of the releases in the local {@link ReleaseLedger}
+     * when that is used. This is listed once and then re-used until new tags are created by
+     * {@link #tagAndPushRepo(Collection)}.
+     */
+    public ReleaseTagIndex localTagIndex() throws GitAPIException {
+        if (localTags == null) {
+            localTags = ReleaseTagIndex.of(git.getRepository(), localTagFetcher.getTags(null));
+        }
+        return localTags;
+    }
 }
 
 interface TagFetcher {
 
-    Collection<Ref> getTags() throws GitAPIException;
+    /**
+     * @param tagNamePrefixes The start of the names of the tags that are wanted, or null for all tags. Fetchers
+     *                        may return tags that do not match.
+     */
+    Collection<Ref> getTags(Collection<String> tagNamePrefixes) throws GitAPIException;
 
 }
 
@@ -237,15 +363,30 @@ class RemoteTagFetcher implements TagFetcher {
     private final Git git;
     private final String remoteUrl;
     private final CredentialsProvider credentialsProvider;
+    private final Log log;
 
     public RemoteTagFetcher(Git git, String remoteUrl, CredentialsProvider credentialsProvider) {
+        this(git, remoteUrl, credentialsProvider, new SystemStreamLog());
+    }
+
+    public RemoteTagFetcher(Git git, String remoteUrl, CredentialsProvider credentialsProvider, Log log) {
         this.git = git;
         this.remoteUrl = remoteUrl;
         this.credentialsProvider = credentialsProvider;
+        this.log = log;
     }
 
     @Override
-    public Collection<Ref> getTags() throws GitAPIException {
+    public Collection<Ref> getTags(Collection<String> tagNamePrefixes) throws GitAPIException {
+        if (tagNamePrefixes != null && !tagNamePrefixes.isEmpty()) {
+            try {
+                return tagsStartingWith(tagNamePrefixes);
+            } catch (IOException | URISyntaxException e) {
+                // list every tag in the way that has always worked, which reports any real problem
+                log.debug("Could not list only the tags starting with " + tagNamePrefixes + ", so listing all of them: " + e, e);
+            }
+        }
+
         LsRemoteCommand lsRemoteCommand = git.lsRemote()
             .setTags(true).setHeads(false)
             .setCredentialsProvider(credentialsProvider);
@@ -256,6 +397,61 @@ class RemoteTagFetcher implements TagFetcher {
         return lsRemoteCommand.call();
    }
 
+    /**
+     * Lists the tags using the {@code ref-prefix} option of Git protocol v2, so that the server only sends the
+     * wanted tags. Servers that only speak protocol v0 ignore the prefixes and send every ref, so the refs are
+     * also filtered here.
+     */
+    private Collection<Ref> tagsStartingWith(Collection<String> tagNamePrefixes) throws IOException, URISyntaxException {
+        List<String> refPrefixes = new ArrayList<String>();
+        for (String tagNamePrefix : tagNamePrefixes) {
+            refPrefixes.add(AnnotatedTag.TAG_PREFIX + tagNamePrefix);
+        }
+        List<Ref> tags = new ArrayList<Ref>();
+        String remote = remoteUrl == null ? Constants.DEFAULT_REMOTE_NAME : remoteUrl;
+        try (Transport transport = openWithProtocolV2(git.getRepository(), remote)) {
+            transport.setCredentialsProvider(credentialsProvider);
+            try (FetchConnection connection = transport.openFetch(Collections.emptyList(), refPrefixes.toArray(new String[0]))) {
+                for (Ref ref : connection.getRefs()) {
+                    if (startsWithAny(ref.getName(), refPrefixes)) {
+                        tags.add(ref);
+                    }
+                }
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * JGit only asks for protocol v2 when {@code protocol.version} is configured, and reads it from the repository
+     * only when the transport is created. Unless the repository configures a version itself, the version is set in
+     * the repository's configuration in memory while the transport is opened and then removed again. The
+     * configuration is never saved, so the file on disk is not changed.
+     */
+    private static Transport openWithProtocolV2(Repository repository, String remote) throws IOException, URISyntaxException {
+        StoredConfig config = repository.getConfig();
+        synchronized (config) {
+            if (config.getString("protocol", null, "version") != null) {
+                return Transport.open(repository, remote);
+            }
+            config.setString("protocol", null, "version", "2");
+            try {
+                return Transport.open(repository, remote);
+            } finally {
+                config.unset("protocol", null, "version");
+            }
+        }
+    }
+
+    static boolean startsWithAny(String refName, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (refName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
 
 class LocalTagFetcher implements TagFetcher {
@@ -267,60 +463,229 @@ class LocalTagFetcher implements TagFetcher {
     }
 
     @Override
-    public Collection<Ref> getTags() throws GitAPIException {
+    public Collection<Ref> getTags(Collection<String> tagNamePrefixes) throws GitAPIException {
         return git.tagList().call();
     }
 
 }
 
-interface TagPusher {
+class LocalTagPusher implements TagPusher {
 
-    void pushTags(Collection<AnnotatedTag> tags) throws GitAPIException;
+    private final Git git;
+
+    public LocalTagPusher(Git git) {
+        this.git = git;
+    }
+
+    @Override
+    public void pushTags(Collection<AnnotatedTag> tags) throws GitAPIException {
+        AnnotatedTag.saveAtHEAD(git, tags);
+    }
 
 }
 
-class RemoteTagPusher implements TagPusher {
+/**
+ * Lists the releases recorded in the {@link ReleaseLedger}, after bringing the ledger up to date with the remote
+ * if allowed, along with any tags listed by another fetcher.
+ */
+class LedgerTagFetcher implements TagFetcher {
 
     private final Git git;
+    private final TagFetcher tagFetcher;
+    private final boolean fetchFromRemote;
     private final String remoteUrl;
     private final CredentialsProvider credentialsProvider;
 
-    public RemoteTagPusher(Git git, String remoteUrl, CredentialsProvider credentialsProvider) {
+    /**
+     * @param tagFetcher Lists the tags as well as the ledger, or null if releases are not tagged
+     */
+    public LedgerTagFetcher(Git git, TagFetcher tagFetcher, boolean fetchFromRemote, String remoteUrl, CredentialsProvider credentialsProvider) {
         this.git = git;
+        this.tagFetcher = tagFetcher;
+        this.fetchFromRemote = fetchFromRemote;
         this.remoteUrl = remoteUrl;
         this.credentialsProvider = credentialsProvider;
     }
 
     @Override
-    public void pushTags(Collection<AnnotatedTag> tags) throws GitAPIException {
-        PushCommand pushCommand = git.push()
-            .setCredentialsProvider(credentialsProvider);
-        if (remoteUrl != null) {
-            pushCommand.setRemote(remoteUrl);
+    public Collection<Ref> getTags(Collection<String> tagNamePrefixes) throws GitAPIException {
+        if (fetchFromRemote) {
+            fetchLedger();
+        }
+        List<String> refPrefixes = new ArrayList<String>();
+        if (tagNamePrefixes != null) {
+            for (String tagNamePrefix : tagNamePrefixes) {
+                refPrefixes.add(AnnotatedTag.TAG_PREFIX + tagNamePrefix);
+            }
         }
 
-        for (AnnotatedTag tag : tags) {
-            pushCommand.add(tag.saveAtHEAD(git));
+        List<Ref> tags = new ArrayList<Ref>();
+        try {
+            for (Ref entry : new ReleaseLedger(git.getRepository()).records()) {
+                if (refPrefixes.isEmpty() || RemoteTagFetcher.startsWithAny(entry.getName(), refPrefixes)) {
+                    tags.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            throw new JGitInternalException("Could not read the release ledger: " + e.getMessage(), e);
         }
+        if (tagFetcher != null) {
+            tags.addAll(tagFetcher.getTags(tagNamePrefixes));
+        }
+        return tags;
+    }
 
-        pushCommand.call();
+    /**
+     * Fast-forwards the local ledger to the remote one.
+     */
+    void fetchLedger() throws GitAPIException {
+        FetchCommand fetchCommand = git.fetch()
+            .setRefSpecs(new RefSpec(LEDGER_REFS + ":" + LEDGER_REFS))
+            .setTagOpt(TagOpt.NO_TAGS)
+            .setCredentialsProvider(credentialsProvider);
+        if (remoteUrl != null) {
+            fetchCommand.setRemote(remoteUrl);
+        }
+        TrackingRefUpdate update = fetchCommand.call().getTrackingRefUpdate(ReleaseLedger.REF);
+        if (update != null && update.getResult() == RefUpdate.Result.REJECTED) {
+            throw new ConcurrentRefUpdateException("The local release ledger " + ReleaseLedger.REF
+                + " has releases that are not on the remote. Push it or delete it before releasing.", null, update.getResult());
+        }
     }
 
+    private static final String LEDGER_REFS = "refs/releases/*";
+
 }
 
-class LocalTagPusher implements TagPusher {
+/**
+ * Records releases in the {@link ReleaseLedger} and then pushes it if a push is given, after passing the tags to
+ * another pusher if they are also being created.
+ * <p>
+ * If another release pushed its own records first, the remote rejects the ledger. The records are then appended
+ * again on top of the remote ledger and pushed, up to {@link RemoteTagPusher#ATTEMPTS} times, unless the remote
+ * ledger already records a release with the same tag name, which fails as a tag that is already on the remote
+ * would. If the ledger cannot be pushed, the local ledger is moved back to where it was, so that it is not left
+ * ahead of the remote.
+ * </p>
+ */
+class LedgerTagPusher implements TagPusher {
 
     private final Git git;
-
-    public LocalTagPusher(Git git) {
+    private final TagPusher tagPusher;
+    private final RemoteTagPusher.Push push;
+    private final LedgerTagFetcher fetcher;
+
+    /**
+     * @param tagPusher Creates the tags as well as the ledger records, or null if releases are not tagged
+     * @param push Pushes the ledger, or null if it is only updated locally
+     * @param fetcher Brings the local ledger up to date with the remote when a push is rejected, or null if
+     *                the ledger is not pushed
+     */
+    public LedgerTagPusher(Git git, TagPusher tagPusher, RemoteTagPusher.Push push, LedgerTagFetcher fetcher) {
         this.git = git;
+        this.tagPusher = tagPusher;
+        this.push = push;
+        this.fetcher = fetcher;
     }
 
     @Override
     public void pushTags(Collection<AnnotatedTag> tags) throws GitAPIException {
+        if (tagPusher != null) {
+            tagPusher.pushTags(tags);
+        }
+        ReleaseLedger releaseLedger = new ReleaseLedger(git.getRepository());
+        ObjectId head;
+        ObjectId previous;
+        Ref ledger;
+        try {
+            head = git.getRepository().resolve(Constants.HEAD);
+            if (head == null) {
+                throw new NoHeadException("Cannot record releases in a repository without a HEAD commit");
+            }
+            previous = ledgerId();
+            ledger = append(releaseLedger, tags, head);
+        } catch (IOException e) {
+            throw new JGitInternalException("Could not record the releases in " + ReleaseLedger.REF + ": " + e.getMessage(), e);
+        }
+        if (push == null) {
+            return;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            Map<String, RemoteRefUpdate.Status> statuses;
+            try {
+                statuses = pushLedger(ledger);
+                if (RemoteTagPusher.isPushed(statuses.get(ReleaseLedger.REF))) {
+                    return;
+                }
+                resetTo(releaseLedger, previous);
+                if (!isBehindRemote(statuses.get(ReleaseLedger.REF)) || attempt >= RemoteTagPusher.ATTEMPTS) {
+                    throw new TagPushException("The remote did not accept the release ledger", statuses, null);
+                }
+                fetcher.fetchLedger();
+                List<String> alreadyRecorded = alreadyRecorded(releaseLedger, tags);
+                if (!alreadyRecorded.isEmpty()) {
+                    throw new TagPushException("The remote release ledger already has " + alreadyRecorded
+                        + ", which another release recorded first", statuses, null);
+                }
+                previous = ledgerId();
+                ledger = append(releaseLedger, tags, head);
+            } catch (GitAPIException | RuntimeException e) {
+                resetTo(releaseLedger, previous);
+                throw e;
+            } catch (IOException e) {
+                resetTo(releaseLedger, previous);
+                throw new JGitInternalException("Could not record the releases in " + ReleaseLedger.REF + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private Map<String, RemoteRefUpdate.Status> pushLedger(Ref ledger) throws GitAPIException {
+        Map<String, RemoteRefUpdate.Status> statuses = new LinkedHashMap<String, RemoteRefUpdate.Status>();
+        statuses.put(ReleaseLedger.REF, RemoteRefUpdate.Status.NOT_ATTEMPTED);
+        for (PushResult result : push.push(Collections.singletonList(ledger), false)) {
+            for (RemoteRefUpdate update : result.getRemoteUpdates()) {
+                statuses.put(update.getRemoteName(), update.getStatus());
+            }
+        }
+        return statuses;
+    }
+
+    private static List<String> alreadyRecorded(ReleaseLedger releaseLedger, Collection<AnnotatedTag> tags) throws IOException {
+        Set<String> recorded = new HashSet<String>();
+        for (Ref record : releaseLedger.records()) {
+            recorded.add(record.getName());
+        }
+        List<String> names = new ArrayList<String>();
         for (AnnotatedTag tag : tags) {
-            tag.saveAtHEAD(git);
+            if (recorded.contains(AnnotatedTag.TAG_PREFIX + tag.name())) {
+                names.add(tag.name());
+            }
+        }
+        return names;
+    }
+
+    private Ref append(ReleaseLedger releaseLedger, Collection<AnnotatedTag> tags, ObjectId head) throws IOException {
+        releaseLedger.append(tags, head);
+        return git.getRepository().exactRef(ReleaseLedger.REF);
+    }
+
+    private ObjectId ledgerId() throws IOException {
+        Ref ledger = git.getRepository().exactRef(ReleaseLedger.REF);
+        return ledger == null ? null : ledger.getObjectId();
+    }
+
+    private static void resetTo(ReleaseLedger releaseLedger, ObjectId ledgerId) {
+        try {
+            releaseLedger.resetTo(ledgerId);
+        } catch (IOException e) {
+            throw new JGitInternalException("Could not reset " + ReleaseLedger.REF + " after a failed push: " + e.getMessage(), e);
         }
     }
 
+    private static boolean isBehindRemote(RemoteRefUpdate.Status status) {
+        return status == RemoteRefUpdate.Status.REJECTED_NONFASTFORWARD
+            || status == RemoteRefUpdate.Status.REJECTED_REMOTE_CHANGED;
+    }
+
 }
@@ -0,0 +1,280 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.model.BuildBase;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.InputLocation;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.Profile;
+import org.apache.maven.project.MavenProject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The modules of the reactor, indexed by groupId:artifactId, along with which modules refer to which.
+ * <p>
+ * A module refers to another if it has it as its parent, a dependency, a plugin or a plugin dependency, or if its
+ * dependency management was inherited or imported from it. The dependencies and plugins of all of the module's
+ * profiles are included whether or not the profile is active, as releasing with a profile switched on must not
+ * pick up a stale version.
+ * </p>
+ * <p>
+ * Only references to modules that come earlier in the build order are kept, which is always the case for the
+ * references Maven itself orders the reactor by.
+ * </p>
+ */
+final class ModuleDependencyGraph {
+
+    private final Map<String, Integer> indexByGA = new HashMap<>();
+    private final List<List<Integer>> dependents = new ArrayList<>();
+
+    private ModuleDependencyGraph() {
+    }
+
+    static ModuleDependencyGraph of(List<MavenProject> projectsInBuildOrder) {
+        ModuleDependencyGraph graph = new ModuleDependencyGraph();
+        for (MavenProject project : projectsInBuildOrder) {
+            graph.indexByGA.putIfAbsent(ga(project.getGroupId(), project.getArtifactId()), graph.dependents.size());
+            graph.dependents.add(new ArrayList<>());
+        }
+        for (int i = 0; i < projectsInBuildOrder.size(); i++) {
+            for (int dependency : graph.modulesReferencedBy(projectsInBuildOrder.get(i))) {
+                if (dependency < i) {
+                    graph.dependents.get(dependency).add(i);
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * @return The position in the build order of the module with the given groupId and artifactId, or -1 if it is
+     * not in the reactor
+     */
+    int indexOf(String groupId, String artifactId) {
+        Integer index = indexByGA.get(ga(groupId, artifactId));
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return The positions in the build order of the modules that refer to the given module, in build order
+     */
+    List<Integer> dependentsOf(int module) {
+        return Collections.unmodifiableList(dependents.get(module));
+    }
+
+    /**
+     * @return The positions in the build order of the given modules and of every module they refer to, directly or
+     * through other modules, in build order. These are the modules Maven builds when the given ones are selected
+     * with <code>--also-make</code>.
+     */
+    List<Integer> withUpstreamOf(Collection<Integer> modules) {
+        BitSet selected = new BitSet();
+        for (int module : modules) {
+            selected.set(module);
+        }
+        for (int i = dependents.size() - 1; i >= 0; i--) {
+            for (int dependent : dependents.get(i)) {
+                if (selected.get(dependent)) {
+                    selected.set(i);
+                    break;
+                }
+            }
+        }
+        List<Integer> upstream = new ArrayList<>();
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            upstream.add(i);
+        }
+        return upstream;
+    }
+
+    /**
+     * @return The given modules split into groups that can be built separately: no module in a group refers to a
+     * module in another group, or shares an upstream module with it, directly or through other modules. The
+     * groups and the modules in them are in build order.
+     */
+    List<List<Integer>> independentGroupsOf(Collection<Integer> modules) {
+        int[] root = new int[dependents.size()];
+        for (int i = 0; i < root.length; i++) {
+            root[i] = i;
+        }
+        List<Integer> built = withUpstreamOf(modules);
+        Set<Integer> inBuild = new LinkedHashSet<>(built);
+        for (int module : built) {
+            for (int dependent : dependents.get(module)) {
+                if (inBuild.contains(dependent)) {
+                    root[find(root, dependent)] = find(root, module);
+                }
+            }
+        }
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        for (int module : new TreeSet<>(modules)) {
+            groups.computeIfAbsent(find(root, module), group -> new ArrayList<>()).add(module);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static int find(int[] root, int module) {
+        while (root[module] != module) {
+            root[module] = root[root[module]];
+            module = root[module];
+        }
+        return module;
+    }
+
+    /**
+     * @param modules Positions in the build order, in build order
+     * @return The largest number of the given modules none of which refers to another, directly or through other
+     * modules. This is the most modules of the build that can ever be built at the same time.
+     */
+    int widthOf(List<Integer> modules) {
+        // By Dilworth's theorem the width is the number of modules less the largest matching of each module to
+        // one it reaches, which is found one augmenting path at a time
+        List<BitSet> reachable = reachableFrom(modules);
+        int[] matchedTo = new int[modules.size()];
+        Arrays.fill(matchedTo, -1);
+        int matching = 0;
+        for (int i = 0; i < modules.size(); i++) {
+            if (augment(i, reachable, matchedTo, new BitSet())) {
+                matching++;
+            }
+        }
+        return modules.size() - matching;
+    }
+
+    /**
+     * @param modules Positions in the build order, in build order
+     * @return The number of modules in the longest chain of the given modules that each refer to the one before,
+     * directly or through other modules. However many threads build them, these are built one after another.
+     */
+    int longestChainIn(List<Integer> modules) {
+        List<BitSet> reachable = reachableFrom(modules);
+        int[] chainEndingAt = new int[modules.size()];
+        int longest = 0;
+        for (int i = 0; i < modules.size(); i++) {
+            chainEndingAt[i] = Math.max(chainEndingAt[i], 1);
+            longest = Math.max(longest, chainEndingAt[i]);
+            BitSet after = reachable.get(i);
+            for (int j = after.nextSetBit(0); j >= 0; j = after.nextSetBit(j + 1)) {
+                chainEndingAt[j] = Math.max(chainEndingAt[j], chainEndingAt[i] + 1);
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * @return For each of the given modules, the positions in the given list of the modules that refer to it,
+     * directly or through modules that are not in the list
+     */
+    private List<BitSet> reachableFrom(List<Integer> modules) {
+        BitSet[] downstream = new BitSet[dependents.size()];
+        for (int i = dependents.size() - 1; i >= 0; i--) {
+            downstream[i] = new BitSet();
+            for (int dependent : dependents.get(i)) {
+                downstream[i].set(dependent);
+                downstream[i].or(downstream[dependent]);
+            }
+        }
+        List<BitSet> reachable = new ArrayList<>();
+        for (int module : modules) {
+            BitSet within = new BitSet();
+            for (int j = 0; j < modules.size(); j++) {
+                if (downstream[module].get(modules.get(j))) {
+                    within.set(j);
+                }
+            }
+            reachable.add(within);
+        }
+        return reachable;
+    }
+
+    private static boolean augment(int from, List<BitSet> reachable, int[] matchedTo, BitSet visited) {
+        BitSet targets = reachable.get(from);
+        for (int to = targets.nextSetBit(0); to >= 0; to = targets.nextSetBit(to + 1)) {
+            if (visited.get(to)) {
+                continue;
+            }
+            visited.set(to);
+            if (matchedTo[to] < 0 || augment(matchedTo[to], reachable, matchedTo, visited)) {
+                matchedTo[to] = from;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Set<Integer> modulesReferencedBy(MavenProject project) {
+        Set<Integer> referenced = new LinkedHashSet<>();
+        if (project.getParent() != null) {
+            addModule(referenced, project.getParent().getGroupId(), project.getParent().getArtifactId());
+        }
+        Model model = project.getModel();
+        addDependencies(referenced, model.getDependencies());
+        addManagingModules(referenced, model.getDependencyManagement());
+        addPlugins(referenced, model.getBuild());
+        for (Profile profile : model.getProfiles()) {
+            addDependencies(referenced, profile.getDependencies());
+            addManagingModules(referenced, profile.getDependencyManagement());
+            addPlugins(referenced, profile.getBuild());
+        }
+        return referenced;
+    }
+
+    private void addDependencies(Set<Integer> referenced, List<Dependency> dependencies) {
+        for (Dependency dependency : dependencies) {
+            addModule(referenced, dependency.getGroupId(), dependency.getArtifactId());
+        }
+    }
+
+    /**
+     * Managed dependencies belong to the module that declared them, e.g. a parent or an imported BOM.
+     */
+    private void addManagingModules(Set<Integer> referenced, DependencyManagement dependencyManagement) {
+        if (dependencyManagement == null) {
+            return;
+        }
+        for (Dependency dependency : dependencyManagement.getDependencies()) {
+            InputLocation location = dependency.getLocation("");
+            if (location == null || location.getSource() == null || location.getSource().getModelId() == null) {
+                continue;
+            }
+            String[] modelId = location.getSource().getModelId().split(":");
+            if (modelId.length >= 2) {
+                addModule(referenced, modelId[0], modelId[1]);
+            }
+        }
+    }
+
+    private void addPlugins(Set<Integer> referenced, BuildBase build) {
+        if (build == null) {
+            return;
+        }
+        for (Plugin plugin : build.getPlugins()) {
+            addModule(referenced, plugin.getGroupId(), plugin.getArtifactId());
+            addDependencies(referenced, plugin.getDependencies());
+        }
+    }
+
+    private void addModule(Set<Integer> referenced, String groupId, String artifactId) {
+        int index = indexOf(groupId, artifactId);
+        if (index >= 0) {
+            referenced.add(index);
+        }
+    }
+
+    private static String ga(String groupId, String artifactId) {
+        return groupId + ":" + artifactId;
+    }
+}
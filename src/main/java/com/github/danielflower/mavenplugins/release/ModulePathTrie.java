@@ -0,0 +1,136 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps paths in the repository to the modules that own them, following the same rules as
+ * {@link TreeWalkingDiffDetector}: a path belongs to a module if it is inside the module's directory but not inside
+ * the directory of one of the module's child modules.
+ */
+class ModulePathTrie {
+
+    private final Node root = new Node();
+
+    ModulePathTrie(Collection<ModuleSinceTags> modules) {
+        for (ModuleSinceTags module : modules) {
+            String modulePath = module.getModulePath();
+            if (!canBePlaced(modulePath)) {
+                throw new IllegalArgumentException("Cannot index module outside of the repository: " + modulePath);
+            }
+            nodeFor(modulePath).owners.add(module);
+
+            boolean isRootModule = ".".equals(modulePath);
+            for (String childModule : module.getChildModules()) {
+                String childPath = isRootModule ? childModule : modulePath + "/" + childModule;
+                if (canBePlaced(childPath)) {
+                    nodeFor(childPath).excluded.add(module);
+                }
+            }
+        }
+    }
+
+    /**
+     * Paths that leave the working tree, such as "../sibling", cannot be looked up in a git tree.
+     */
+    static boolean canBePlaced(String path) {
+        for (String segment : segmentsOf(path)) {
+            if ("..".equals(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the given candidate modules that own a path which differs between the commit and every one of its
+     * parents. Directories that contain no module boundaries are compared by tree id without being entered.
+     */
+    Set<ModuleSinceTags> modulesChangedBy(ObjectReader reader, RevCommit commit, Set<ModuleSinceTags> candidates) throws IOException {
+        Set<ModuleSinceTags> changed = new HashSet<>();
+        try (TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(commit.getTree());
+            if (commit.getParentCount() == 0) {
+                treeWalk.addTree(new EmptyTreeIterator());
+            }
+            for (RevCommit parent : commit.getParents()) {
+                treeWalk.addTree(parent.getTree());
+            }
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            treeWalk.setRecursive(false);
+            while (treeWalk.next()) {
+                if (isSameAsOneOfTheParents(treeWalk)) {
+                    continue;
+                }
+                Node node = root;
+                Set<ModuleSinceTags> owners = new HashSet<>(root.owners);
+                for (String segment : segmentsOf(treeWalk.getPathString())) {
+                    node = node.children.get(segment);
+                    if (node == null) {
+                        break;
+                    }
+                    owners.addAll(node.owners);
+                    owners.removeAll(node.excluded);
+                }
+                if (node != null && treeWalk.isSubtree()) {
+                    treeWalk.enterSubtree();
+                    continue;
+                }
+                for (ModuleSinceTags owner : owners) {
+                    if (candidates.contains(owner)) {
+                        changed.add(owner);
+                    }
+                }
+                if (changed.size() == candidates.size()) {
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isSameAsOneOfTheParents(TreeWalk treeWalk) {
+        for (int i = 1; i < treeWalk.getTreeCount(); i++) {
+            if (treeWalk.getRawMode(0) == treeWalk.getRawMode(i) && treeWalk.idEqual(0, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Node nodeFor(String path) {
+        Node node = root;
+        for (String segment : segmentsOf(path)) {
+            node = node.children.computeIfAbsent(segment, s -> new Node());
+        }
+        return node;
+    }
+
+    private static List<String> segmentsOf(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.replace('\\', '/').split("/")) {
+            if (!segment.isEmpty() && !".".equals(segment)) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private final List<ModuleSinceTags> owners = new ArrayList<>();
+        private final List<ModuleSinceTags> excluded = new ArrayList<>();
+    }
+}
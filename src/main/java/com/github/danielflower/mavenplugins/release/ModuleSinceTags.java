@@ -0,0 +1,48 @@
+package com.github.danielflower.mavenplugins.release;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A module along with the tags of its last release, used to ask a {@link DiffDetector} about many modules at once.
+ */
+public class ModuleSinceTags {
+    private final String modulePath;
+    private final List<String> childModules;
+    private final Collection<AnnotatedTag> tags;
+
+    public ModuleSinceTags(String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) {
+        Guard.notBlank("modulePath", modulePath);
+        Guard.notNull("childModules", childModules);
+        Guard.notNull("tags", tags);
+        this.modulePath = modulePath;
+        this.childModules = childModules;
+        this.tags = tags;
+    }
+
+    /**
+     * The path of the module relative to the root of the repository, or "." for the root itself
+     */
+    public String getModulePath() {
+        return modulePath;
+    }
+
+    /**
+     * The modules declared by this module, relative to it. Changes in these are not changes to this module.
+     */
+    public List<String> getChildModules() {
+        return childModules;
+    }
+
+    public Collection<AnnotatedTag> getTags() {
+        return tags;
+    }
+
+    @Override
+    public String toString() {
+        return "ModuleSinceTags{" +
+            "modulePath='" + modulePath + '\'' +
+            ", tags=" + tags +
+            '}';
+    }
+}
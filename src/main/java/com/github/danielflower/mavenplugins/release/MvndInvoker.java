@@ -0,0 +1,69 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.shared.invoker.DefaultInvoker;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the release build with the client of the Maven daemon (mvnd), which hands it to a daemon that already has
+ * Maven and the build's plugins loaded and compiled, rather than starting Maven in a new JVM.
+ * <p>
+ * The mvnd client takes the same command line as mvn, so the goals, profiles, project list and settings are passed
+ * exactly as they are for a forked mvn build.
+ * </p>
+ */
+class MvndInvoker extends DefaultInvoker {
+    static final String MVND_HOME = "MVND_HOME";
+
+    MvndInvoker(File mvndExecutable) {
+        Guard.notNull("mvndExecutable", mvndExecutable);
+        setMavenExecutable(mvndExecutable);
+    }
+
+    /**
+     * Finds the mvnd client to use: the configured file if there is one, otherwise the client in
+     * <code>$MVND_HOME/bin</code>, otherwise the first one on the <code>PATH</code>.
+     * @return The client, or null if it cannot be found
+     */
+    static File findMvnd(File configured, Map<String, String> environment) {
+        if (configured != null) {
+            return configured.isFile() ? configured.getAbsoluteFile() : null;
+        }
+        String mvndHome = environment.get(MVND_HOME);
+        if (mvndHome != null && !mvndHome.isEmpty()) {
+            File client = clientIn(new File(mvndHome, "bin"));
+            if (client != null) {
+                return client;
+            }
+        }
+        String path = environment.get("PATH");
+        if (path != null) {
+            for (String directory : path.split(File.pathSeparator)) {
+                if (!directory.isEmpty()) {
+                    File client = clientIn(new File(directory));
+                    if (client != null) {
+                        return client;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static File clientIn(File directory) {
+        for (String name : clientNames()) {
+            File client = new File(directory, name);
+            if (client.isFile()) {
+                return client.getAbsoluteFile();
+            }
+        }
+        return null;
+    }
+
+    private static List<String> clientNames() {
+        return File.separatorChar == '\\' ? Arrays.asList("mvnd.cmd", "mvnd.exe") : Arrays.asList("mvnd", "mvnd.sh");
+    }
+}
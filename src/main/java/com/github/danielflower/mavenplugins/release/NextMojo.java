@@ -44,9 +44,11 @@ public class NextMojo extends BaseMojo {
                 .remoteGitUrl(getRemoteUrlOrNullIfNoneSet(project.getOriginalModel().getScm(),
                                                           project.getModel().getScm()))
                 .credentialsProvider(getCredentialsProvider(log))
+                .releaseStorage(releaseStorage == null ? ReleaseStorage.Tags : releaseStorage)
+                .log(log)
                 .buildFromCurrentDir();
-            ResolverWrapper resolverWrapper = new ResolverWrapper(factory, artifactResolver, remoteRepositories, localRepository);
-            Reactor reactor = Reactor.fromProjects(log, repo, project, projects, buildNumber, modulesToForceRelease, noChangesAction, resolverWrapper, versionNamer);
+            Resolver resolverWrapper = newResolver();
+            Reactor reactor = Reactor.fromProjects(log, repo, project, projects, buildNumber, modulesToForceRelease, noChangesAction, resolverWrapper, versionNamer, analysisThreads);
             if (reactor == null) {
                 return;
             }
@@ -1,14 +1,14 @@
 package com.github.danielflower.mavenplugins.release;
 
 import java.io.File;
-import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Model;
@@ -18,97 +18,182 @@ import org.apache.maven.project.MavenProject;
 import org.eclipse.tycho.versions.engine.EclipseVersionUpdater;
 import org.eclipse.tycho.versions.engine.ProjectMetadata;
 import org.eclipse.tycho.versions.engine.ProjectMetadataReader;
+import org.eclipse.tycho.versions.engine.VersionUpdater;
+import org.eclipse.tycho.versions.pom.PomDocumentCache;
 
 public class PomUpdater {
 
     private final Log log;
     private final Reactor reactor;
+    private final RollbackJournal journal;
+    private final int threads;
 
     private EclipseVersionUpdater metadataUpdater = new EclipseVersionUpdater();
 
 	private ProjectMetadataReader pomReader = new ProjectMetadataReader();
 
+    private final PomDocumentCache documents = new PomDocumentCache();
+
 
     public PomUpdater(Log log, Reactor reactor) {
+        this(log, reactor, null, 0);
+    }
+
+    /**
+     * @param journal Keeps the contents of each file before it is changed, so the changes can be reverted, or null
+     *                if they are not to be kept
+     * @param threads The number of POMs to rewrite at the same time, or 0 for the number of available processors
+     */
+    public PomUpdater(Log log, Reactor reactor, RollbackJournal journal, int threads) {
         this.log = log;
         this.reactor = reactor;
+        this.journal = journal;
+        this.threads = threads;
+        metadataUpdater.setDocumentCache(documents);
+        pomReader.setDocumentCache(documents);
+        metadataUpdater.setWrittenFiles(journal == null ? new HashSet<File>() : journal.keepingSet());
     }
 
     public UpdateResult updateVersion() {
         List<File> changedPoms = new ArrayList<File>();
         List<String> errors = new ArrayList<String>();
-        for (ReleasableModule module : reactor.getModulesInBuildOrder()) {
-        	try {
-        		MavenProject project = module.getProject();
-                if (module.willBeReleased()) {
-                    log.info("Going to release " + module.getArtifactId() + " " + module.getNewVersion());
+        List<ReleasableModule> modules = reactor.getModulesInBuildOrder();
+        Exception unexpectedException = alterModels(errors);
+        if (unexpectedException != null) {
+            return new UpdateResult(changedPoms, errors, unexpectedException);
+        }
+
+        // Each rewrite only reads the new versions, which are all known by now, so the files can be rewritten
+        // at the same time. The results are gathered in build order so the error reported does not depend on
+        // which thread finished first.
+        ExecutorService executor = newRewriteExecutor(threads, modules.size());
+        try {
+            List<Future<File>> rewrites = new ArrayList<Future<File>>();
+            for (final ReleasableModule module : modules) {
+                rewrites.add(executor.submit(() -> rewritePom(module)));
+            }
+            Exception firstFailure = null;
+            for (Future<File> rewrite : rewrites) {
+                try {
+                    changedPoms.add(rewrite.get());
+                } catch (ExecutionException e) {
+                    if (firstFailure == null) {
+                        firstFailure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
                 }
+            }
+            if (firstFailure != null) {
+                return new UpdateResult(changedPoms, errors, firstFailure);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new UpdateResult(changedPoms, errors, e);
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        // We now do the Eclipse stuff, which must be done after all pom versions have been
+        // updated above. Every module goes through the engine in one pass, so changes spread
+        // between bundles, features, categories and products at once and each file is
+        // written once.
+        try {
+            List<MavenProject> projects = new ArrayList<MavenProject>();
+            for (ReleasableModule module : modules) {
+                projects.add(module.getProject());
+            }
+            metadataUpdater.setProjects(projects);
+            metadataUpdater.setUpdatedFiles(new HashSet<String>());
+            metadataUpdater.apply();
+        } catch (Exception e) {
+            return new UpdateResult(changedPoms, errors, e);
+        }
 
-                List<String> errorsForCurrentPom = alterModel(project, module.getNewVersion());
-                errors.addAll(errorsForCurrentPom);
+        return new UpdateResult(changedPoms, errors, null);
+    }
 
-                File pom = project.getFile().getCanonicalFile();
-                
-                byte[] bytes = Files.readAllBytes(pom.toPath());
-                String pomContents = new String(bytes);
-                Project pomProjectUpdater = new Project(pomContents);
-                
-                changedPoms.add(pom);
-                
-                pomProjectUpdater.setVersion(module.getNewVersion());
-                if (module.getProject().getParent() != null) {
-                	// Find the module for the parent
-                	MavenProject parentProject = module.getProject().getParent();
-                	Optional<ReleasableModule> parentModule = findProject(parentProject.getGroupId(), parentProject.getArtifactId());
-                	pomProjectUpdater.setParentVersion(parentModule.get().getNewVersion());
-                }
-                
-                for (Dependency dependency : module.getProject().getModel().getDependencies()) {
-                	Optional<ReleasableModule> dependentProject = findProject(dependency.getGroupId(), dependency.getArtifactId());
-                	// It may be a dependency on a project outside our reactor, in which
-                	// case we will never be changing the version.
-                	if (dependentProject.isPresent()) {
-                		pomProjectUpdater.setDependencyVersion(dependency.getGroupId(), dependency.getArtifactId(), dependentProject.get().getNewVersion());
-                	}
-                }
-                
-                String newContents = pomProjectUpdater.getPom();
-    			byte[] newBytes = newContents.getBytes();
-    			Files.write(pom.toPath(), newBytes);
-    			
-//???    			releaseDescriptor.setUpdatedFiles(updatedFiles);
+    private File rewritePom(ReleasableModule module) throws Exception {
+        MavenProject project = module.getProject();
+        File pom = project.getFile().getCanonicalFile();
 
-            } catch (Exception e) {
-                return new UpdateResult(changedPoms, errors, e);
+        byte[] bytes = documents.read(pom);
+        String pomContents = new String(bytes);
+        Project pomProjectUpdater = new Project(pomContents);
+
+        pomProjectUpdater.setVersion(module.getNewVersion());
+        if (project.getParent() != null) {
+            // Find the module for the parent
+            MavenProject parentProject = project.getParent();
+            Optional<ReleasableModule> parentModule = findProject(parentProject.getGroupId(), parentProject.getArtifactId());
+            pomProjectUpdater.setParentVersion(parentModule.get().getNewVersion());
+        }
+
+        for (Dependency dependency : project.getModel().getDependencies()) {
+            Optional<ReleasableModule> dependentProject = findProject(dependency.getGroupId(), dependency.getArtifactId());
+            // It may be a dependency on a project outside our reactor, in which
+            // case we will never be changing the version.
+            if (dependentProject.isPresent()) {
+                pomProjectUpdater.setDependencyVersion(dependency.getGroupId(), dependency.getArtifactId(), dependentProject.get().getNewVersion());
             }
         }
-        
-        // We now do the Eclipse stuff, which must be done in a separate loop
-        // after all pom versions have been updated in the prior loop.
+
+        byte[] newBytes = pomProjectUpdater.getPom().getBytes();
+        if (journal != null) {
+            journal.keep(pom);
+        }
+        documents.write(pom, newBytes);
+        return pom;
+    }
+
+    private static ExecutorService newRewriteExecutor(int rewriteThreads, int moduleCount) {
+        int threads = rewriteThreads > 0 ? rewriteThreads : Runtime.getRuntime().availableProcessors();
+        threads = Math.max(1, Math.min(threads, moduleCount));
+        return DaemonExecutors.fixed("release-pom-rewrite", threads);
+    }
+
+    /**
+     * Checks the release versions of the modules and their references to each other, as {@link #updateVersion()}
+     * does, but without writing any files.
+     */
+    public UpdateResult checkVersionsWithoutWriting() {
+        List<String> errors = new ArrayList<String>();
+        Exception unexpectedException = alterModels(errors);
+        return new UpdateResult(new ArrayList<File>(), errors, unexpectedException);
+    }
+
+    /**
+     * @return A line for each module with Eclipse metadata, which can only be given the release version by
+     * rewriting the files
+     */
+    public List<String> modulesWithEclipseMetadata() {
+        List<String> modules = new ArrayList<String>();
+        for (ReleasableModule module : reactor.getModulesInBuildOrder()) {
+            String packaging = module.getProject().getPackaging();
+            if (VersionUpdater.hasMetadataFor(packaging)) {
+                modules.add(module.getArtifactId() + " has " + packaging + " packaging");
+            }
+        }
+        return modules;
+    }
+
+    private Exception alterModels(List<String> errors) {
         for (ReleasableModule module : reactor.getModulesInBuildOrder()) {
         	try {
         		MavenProject project = module.getProject();
+                if (module.willBeReleased()) {
+                    log.info("Going to release " + module.getArtifactId() + " " + module.getNewVersion());
+                }
 
-    			// Do the eclipse stuff
-    			Set<String> updatedFiles = null; //??? releaseDescriptor.getUpdatedFiles();
-    			if (updatedFiles == null) {
-    				updatedFiles = new HashSet<>();
-    			}
-    			metadataUpdater.setProjects(Collections.singletonList(project));
-    			metadataUpdater.setUpdatedFiles(updatedFiles);
-    			metadataUpdater.apply();
-
+                List<String> errorsForCurrentPom = alterModel(project, module.getNewVersion());
+                errors.addAll(errorsForCurrentPom);
             } catch (Exception e) {
-                return new UpdateResult(changedPoms, errors, e);
+                return e;
             }
         }
-        
-
-        return new UpdateResult(changedPoms, errors, null);
+        return null;
     }
 
 	private Optional<ReleasableModule> findProject(String groupId, String artifactId) {
-		return reactor.getModulesInBuildOrder().stream().filter(p -> p.getGroupId().equals(groupId) && p.getArtifactId().equals(artifactId)).findFirst();
+		return Optional.ofNullable(reactor.findModule(groupId, artifactId));
 	}    		
 
     public static class UpdateResult {
@@ -0,0 +1,96 @@
+package com.github.danielflower.mavenplugins.release;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An append-only file listing artifacts that are known to have been published to a remote repository. A released
+ * version is never changed once it has been deployed, so an artifact that has been seen in a repository once does
+ * not need to be looked for again.
+ * <p>
+ * Each line is the URL of a remote repository and an artifact in it, in the form
+ * {@code repositoryUrl groupId:artifactId:type:version}. An artifact is only known to be published to the
+ * repositories it is listed with, as the file is shared by every project using the local repository. Lines without
+ * a repository URL, as written by earlier versions, are ignored.
+ * </p>
+ */
+public class PublishedArtifactLedger {
+
+    private final File file;
+    private Set<String> published;
+
+    public PublishedArtifactLedger(File file) {
+        Guard.notNull("file", file);
+        this.file = file;
+    }
+
+    /**
+     * Creates a ledger in the {@code .multi-module-release} directory of a local Maven repository, so that it is
+     * shared by every project built on the same machine.
+     */
+    public static PublishedArtifactLedger inLocalRepository(File localRepositoryDir) {
+        return new PublishedArtifactLedger(new File(new File(localRepositoryDir, ".multi-module-release"), "published-artifacts"));
+    }
+
+    public synchronized boolean contains(String repositoryUrl, ArtifactCoordinates artifact) throws IOException {
+        return published().contains(line(repositoryUrl, artifact));
+    }
+
+    /**
+     * Adds the artifacts, as published to the given remote repository, to the end of the file, skipping any that
+     * are already in it.
+     */
+    public synchronized void add(String repositoryUrl, Collection<ArtifactCoordinates> artifacts) throws IOException {
+        Guard.notBlank("repositoryUrl", repositoryUrl);
+        List<String> lines = new ArrayList<>();
+        for (ArtifactCoordinates artifact : artifacts) {
+            String line = line(repositoryUrl, artifact);
+            if (!published().contains(line)) {
+                lines.add(line);
+            }
+        }
+        if (lines.isEmpty()) {
+            return;
+        }
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir.getCanonicalPath());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            StringBuilder contents = new StringBuilder();
+            for (String line : lines) {
+                contents.append(line).append('\n');
+            }
+            // a single write so that runs appending at the same time do not interleave their lines
+            writer.write(contents.toString());
+        }
+        published.addAll(lines);
+    }
+
+    private static String line(String repositoryUrl, ArtifactCoordinates artifact) {
+        return repositoryUrl + " " + artifact;
+    }
+
+    private Set<String> published() throws IOException {
+        if (published == null) {
+            published = new HashSet<>();
+            if (file.isFile()) {
+                for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                    if (line.trim().contains(" ")) {
+                        published.add(line.trim());
+                    }
+                }
+            }
+        }
+        return published;
+    }
+}
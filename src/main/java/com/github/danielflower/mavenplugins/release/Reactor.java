@@ -1,104 +1,144 @@
 package com.github.danielflower.mavenplugins.release;
 
-import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static com.github.danielflower.mavenplugins.release.MavenVersionResolver.resolveVersionsDefinedThroughProperties;
 
 public class Reactor {
 
     private final List<ReleasableModule> modulesInBuildOrder;
+    private final Map<String, Map<String, ReleasableModule>> modulesByGroupAndArtifact;
 
     public Reactor(List<ReleasableModule> modulesInBuildOrder) {
-        this.modulesInBuildOrder = modulesInBuildOrder;
+        this.modulesInBuildOrder = Collections.unmodifiableList(new ArrayList<ReleasableModule>(modulesInBuildOrder));
+        Map<String, Map<String, ReleasableModule>> index = new HashMap<String, Map<String, ReleasableModule>>();
+        for (ReleasableModule module : modulesInBuildOrder) {
+            index.computeIfAbsent(module.getGroupId(), groupId -> new HashMap<String, ReleasableModule>())
+                .putIfAbsent(module.getArtifactId(), module);
+        }
+        for (Map.Entry<String, Map<String, ReleasableModule>> group : index.entrySet()) {
+            group.setValue(Collections.unmodifiableMap(group.getValue()));
+        }
+        this.modulesByGroupAndArtifact = Collections.unmodifiableMap(index);
     }
 
     public List<ReleasableModule> getModulesInBuildOrder() {
         return modulesInBuildOrder;
     }
 
-    public static Reactor fromProjects(Log log, LocalGitRepo gitRepo, MavenProject rootProject, List<MavenProject> projects, Long buildNumber, List<String> modulesToForceRelease, NoChangesAction actionWhenNoChangesDetected, Resolver resolverWrapper, VersionNamer versionNamer) throws ValidationException, GitAPIException, MojoExecutionException {
-        DiffDetector detector = new TreeWalkingDiffDetector(gitRepo.git.getRepository());
+    public static Reactor fromProjects(Log log, LocalGitRepo gitRepo, MavenProject rootProject, List<MavenProject> projects, Long buildNumber, List<String> modulesToForceRelease, NoChangesAction actionWhenNoChangesDetected, Resolver resolverWrapper, VersionNamer versionNamer, int analysisThreads) throws ValidationException, GitAPIException, MojoExecutionException {
+        Repository repository = gitRepo.git.getRepository();
+        DiffDetector detector = new TreeIdDiffDetector(repository, CachingDiffDetector.inGitDirectory(repository, new TreeWalkingDiffDetector(repository)));
         List<ReleasableModule> modules = new ArrayList<ReleasableModule>();
 
         resolveVersionsDefinedThroughProperties(projects);
 
-        AnnotatedTagFinder annotatedTagFinder = new AnnotatedTagFinder(versionNamer);
+        // only the tags of the versions being released are needed, which is a small part of a busy remote
+        List<String> tagNamePrefixes = new ArrayList<String>();
         for (MavenProject project : projects) {
-            String relativePathToModule = calculateModulePath(rootProject, project);
-            String artifactId = project.getArtifactId();
-            String versionWithoutBuildNumber = project.getVersion().replace("-SNAPSHOT", "");
-            List<AnnotatedTag> previousTagsForThisModule = annotatedTagFinder.tagsForVersion(gitRepo.git, artifactId, versionWithoutBuildNumber);
+            tagNamePrefixes.add(project.getArtifactId() + "-" + project.getVersion().replace("-SNAPSHOT", ""));
+        }
+        gitRepo.limitTagsTo(tagNamePrefixes);
 
+        // the tag indexes are built lazily, so build them before they are shared between the workers
+        final ReleaseTagIndex localTags = gitRepo.localTagIndex();
+        final ReleaseTagIndex allTags = gitRepo.allTagIndex();
+        final AnnotatedTagFinder annotatedTagFinder = new AnnotatedTagFinder(versionNamer);
 
-            Collection<Long> previousBuildNumbers = new ArrayList<Long>();
-            if (previousTagsForThisModule != null) {
-                for (AnnotatedTag previousTag : previousTagsForThisModule) {
-                    previousBuildNumbers.add(previousTag.buildNumber());
-                }
-            }
+        ModuleDependencyGraph graph = ModuleDependencyGraph.of(projects);
+        List<ModuleCandidate> candidates;
+        ExecutorService executor = newAnalysisExecutor(analysisThreads, projects.size());
+        try {
+            List<Callable<ModuleCandidate>> tagLookups = new ArrayList<Callable<ModuleCandidate>>();
+            for (final MavenProject project : projects) {
+                final String relativePathToModule = calculateModulePath(rootProject, project);
+                tagLookups.add(() -> {
+                    String artifactId = project.getArtifactId();
+                    String versionWithoutBuildNumber = project.getVersion().replace("-SNAPSHOT", "");
+                    List<AnnotatedTag> previousTagsForThisModule = annotatedTagFinder.tagsForVersion(gitRepo.git, localTags, artifactId, versionWithoutBuildNumber);
 
-            Collection<Long> remoteBuildNumbers = getRemoteBuildNumbers(gitRepo, artifactId, versionWithoutBuildNumber, versionNamer);
-            previousBuildNumbers.addAll(remoteBuildNumbers);
-
-            VersionName newVersion = versionNamer.name(project.getVersion(), buildNumber, previousBuildNumbers);
-
-            boolean oneOfTheDependenciesHasChanged = false;
-            String changedDependency = null;
-            for (ReleasableModule module : modules) {
-                if (module.willBeReleased()) {
-                    for (Dependency dependency : project.getModel().getDependencies()) {
-                        if (hasSameMavenGA(module, dependency)) {
-                            oneOfTheDependenciesHasChanged = true;
-                            changedDependency = dependency.getArtifactId();
-                            break;
-                        }
+                    Collection<Long> previousBuildNumbers = new ArrayList<Long>();
+                    for (AnnotatedTag previousTag : previousTagsForThisModule) {
+                        previousBuildNumbers.add(previousTag.buildNumber());
                     }
 
-                    if (project.getModel().getDependencyManagement() != null) {
-                        for (Dependency dependency : project.getModel().getDependencyManagement().getDependencies()) {
-                            if (hasSameMavenGAByDependencyLocation(module, dependency)) {
-                                oneOfTheDependenciesHasChanged = true;
-                                changedDependency = module.getArtifactId();
-                                break;
-                            }
-                        }
-                    }
+                    Collection<Long> remoteBuildNumbers = getRemoteBuildNumbers(allTags, artifactId, versionWithoutBuildNumber, versionNamer);
+                    previousBuildNumbers.addAll(remoteBuildNumbers);
 
-                    if (project.getParent() != null && hasSameMavenGA(module, project.getParent())) {
-                        oneOfTheDependenciesHasChanged = true;
-                        changedDependency = project.getParent().getArtifactId();
-                        break;
-                    }
-                }
-                if (oneOfTheDependenciesHasChanged) {
-                    break;
-                }
+                    VersionName newVersion = versionNamer.name(project.getVersion(), buildNumber, previousBuildNumbers);
+                    return new ModuleCandidate(project, relativePathToModule, previousTagsForThisModule, newVersion);
+                });
+            }
+            candidates = inParallel(executor, tagLookups);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<ModuleSinceTags> previouslyReleased = new ArrayList<ModuleSinceTags>();
+        for (ModuleCandidate candidate : candidates) {
+            if (!candidate.previousTags.isEmpty()) {
+                previouslyReleased.add(new ModuleSinceTags(candidate.relativePathToModule, candidate.project.getModel().getModules(), candidate.previousTags));
             }
+        }
+        Set<String> changedModulePaths;
+        try {
+            changedModulePaths = detector.changedModules(previouslyReleased);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error while detecting which modules have changed since their last release", e);
+        }
+        for (ModuleCandidate candidate : candidates) {
+            if (!candidate.previousTags.isEmpty() && !changedModulePaths.contains(candidate.relativePathToModule)) {
+                candidate.previousTagThatIsTheSameAsHEAD = tagWithHighestBuildNumber(candidate.previousTags);
+            }
+        }
+
+        List<ModuleCandidate> mayReuse = modulesThatMayReuseTheirLastRelease(candidates, graph, modulesToForceRelease);
+        List<ArtifactCoordinates> previousReleases = new ArrayList<ArtifactCoordinates>();
+        for (ModuleCandidate candidate : mayReuse) {
+            previousReleases.add(candidate.previousRelease(versionNamer));
+        }
+        Set<ArtifactCoordinates> resolvable = resolverWrapper.resolvable(previousReleases, log);
+        for (ModuleCandidate candidate : mayReuse) {
+            candidate.previousReleaseResolvable = resolvable.contains(candidate.previousRelease(versionNamer));
+        }
+
+        // the first module in build order that is released and that each module refers to
+        String[] changedDependencies = new String[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            ModuleCandidate candidate = candidates.get(i);
+            MavenProject project = candidate.project;
+            String artifactId = project.getArtifactId();
+            VersionName newVersion = candidate.newVersion;
+            String changedDependency = changedDependencies[i];
 
             String equivalentVersion = null;
 
             if(modulesToForceRelease != null && modulesToForceRelease.contains(artifactId)) {
                 log.info("Releasing " + artifactId + " " + newVersion.releaseVersion() + " as we was asked to forced release.");
-            } else if (oneOfTheDependenciesHasChanged) {
+            } else if (changedDependency != null) {
                 log.info("Releasing " + artifactId + " " + newVersion.releaseVersion() + " as " + changedDependency + " has changed.");
             } else {
-                AnnotatedTag previousTagThatIsTheSameAsHEADForThisModule = hasChangedSinceLastRelease(previousTagsForThisModule, detector, project, relativePathToModule);
-                if (previousTagThatIsTheSameAsHEADForThisModule != null) {
-                    equivalentVersion = previousTagThatIsTheSameAsHEADForThisModule.version() + versionNamer.getDelimiter() + previousTagThatIsTheSameAsHEADForThisModule.buildNumber();
-                    // attempt to resolve
-                    if (resolverWrapper.isResolvable(project.getGroupId(), project.getArtifactId(), equivalentVersion, project.getPackaging(), log)) {
+                if (candidate.previousTagThatIsTheSameAsHEAD != null) {
+                    equivalentVersion = candidate.equivalentVersion(versionNamer);
+                    if (candidate.isPreviousReleaseResolvable(resolverWrapper, versionNamer, log)) {
                         log.info("Will use version " + equivalentVersion + " for " + artifactId + " as it has not been changed since that release.");
                     } else {
                         log.info("Will use version " + newVersion.releaseVersion() + " for " + artifactId + " as although no change was detected, the artifact cannot be resolved!");
@@ -108,8 +148,15 @@ public class Reactor {
                     log.info("Will use version " + newVersion.releaseVersion() + " for " + artifactId + " as it has changed since the last release.");
                 }
             }
-            ReleasableModule module = new ReleasableModule(project, newVersion, equivalentVersion, relativePathToModule);
+            ReleasableModule module = new ReleasableModule(project, newVersion, equivalentVersion, candidate.relativePathToModule);
             modules.add(module);
+            if (module.willBeReleased()) {
+                for (int dependent : graph.dependentsOf(i)) {
+                    if (changedDependencies[dependent] == null) {
+                        changedDependencies[dependent] = artifactId;
+                    }
+                }
+            }
         }
 
         if (!atLeastOneBeingReleased(modules)) {
@@ -132,32 +179,109 @@ public class Reactor {
         return new Reactor(modules);
     }
 
-    private static boolean hasSameMavenGA(ReleasableModule module, Dependency dependency) {
-        return dependency.getGroupId().equals(module.getGroupId()) && dependency.getArtifactId().equals(module.getArtifactId());
+    /**
+     * Works out, in build order, which modules are certain to be released whether or not their previous release can
+     * be resolved, so that only the others need to be looked up in the repositories.
+     */
+    private static List<ModuleCandidate> modulesThatMayReuseTheirLastRelease(List<ModuleCandidate> candidates, ModuleDependencyGraph graph, List<String> modulesToForceRelease) {
+        List<ModuleCandidate> mayReuse = new ArrayList<ModuleCandidate>();
+        boolean[] certainlyReleased = new boolean[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            ModuleCandidate candidate = candidates.get(i);
+            if (candidate.previousTagThatIsTheSameAsHEAD == null
+                || (modulesToForceRelease != null && modulesToForceRelease.contains(candidate.project.getArtifactId()))) {
+                certainlyReleased[i] = true;
+            }
+            if (certainlyReleased[i]) {
+                for (int dependent : graph.dependentsOf(i)) {
+                    certainlyReleased[dependent] = true;
+                }
+            } else {
+                mayReuse.add(candidate);
+            }
+        }
+        return mayReuse;
     }
 
-    private static boolean hasSameMavenGA(ReleasableModule module, MavenProject project) {
-        return project.getGroupId().equals(module.getGroupId()) && project.getArtifactId().equals(module.getArtifactId());
+    private static ExecutorService newAnalysisExecutor(int analysisThreads, int moduleCount) {
+        int threads = analysisThreads > 0 ? analysisThreads : Runtime.getRuntime().availableProcessors();
+        threads = Math.max(1, Math.min(threads, moduleCount));
+        return DaemonExecutors.fixed("release-analysis", threads);
     }
 
-    private static boolean hasSameMavenGAByDependencyLocation(ReleasableModule module, Dependency dependency) {
-        String[] modelId = dependency.getLocation("").getSource().getModelId().split(":");
-        return modelId[0].equals(module.getGroupId()) && modelId[1].equals(module.getArtifactId());
+    /**
+     * Runs the tasks and returns their results in the same order as the tasks. If any fail, the failure of the
+     * first one in the list is thrown, so the error reported does not depend on which thread finished first.
+     */
+    private static <T> List<T> inParallel(ExecutorService executor, List<Callable<T>> tasks) throws ValidationException, GitAPIException, MojoExecutionException {
+        List<Future<T>> futures = new ArrayList<Future<T>>();
+        for (Callable<T> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        List<T> results = new ArrayList<T>();
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while working out which modules to release", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ValidationException) {
+                throw (ValidationException) cause;
+            } else if (cause instanceof GitAPIException) {
+                throw (GitAPIException) cause;
+            } else if (cause instanceof MojoExecutionException) {
+                throw (MojoExecutionException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MojoExecutionException("Error while working out which modules to release", cause);
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
     }
 
-    private static Collection<Long> getRemoteBuildNumbers(LocalGitRepo gitRepo, String artifactId, String versionWithoutBuildNumber, VersionNamer versionNamer) throws GitAPIException {
-        Collection<Ref> remoteTagRefs = gitRepo.allTags();
-        Collection<Long> remoteBuildNumbers = new ArrayList<Long>();
-        String tagWithoutBuildNumber = artifactId + "-" + versionWithoutBuildNumber;
-        AnnotatedTagFinder annotatedTagFinder = new AnnotatedTagFinder(versionNamer);
-        for (Ref remoteTagRef : remoteTagRefs) {
-            String remoteTagName = remoteTagRef.getName();
-            Long buildNumber = annotatedTagFinder.buildNumberOf(tagWithoutBuildNumber, remoteTagName);
-            if (buildNumber != null) {
-                remoteBuildNumbers.add(buildNumber);
+    private static class ModuleCandidate {
+        private final MavenProject project;
+        private final String relativePathToModule;
+        private final List<AnnotatedTag> previousTags;
+        private final VersionName newVersion;
+        private AnnotatedTag previousTagThatIsTheSameAsHEAD;
+        private Boolean previousReleaseResolvable;
+
+        private ModuleCandidate(MavenProject project, String relativePathToModule, List<AnnotatedTag> previousTags, VersionName newVersion) {
+            this.project = project;
+            this.relativePathToModule = relativePathToModule;
+            this.previousTags = previousTags;
+            this.newVersion = newVersion;
+        }
+
+        private String equivalentVersion(VersionNamer versionNamer) {
+            return previousTagThatIsTheSameAsHEAD.version() + versionNamer.getDelimiter() + previousTagThatIsTheSameAsHEAD.buildNumber();
+        }
+
+        private ArtifactCoordinates previousRelease(VersionNamer versionNamer) {
+            return new ArtifactCoordinates(project.getGroupId(), project.getArtifactId(), equivalentVersion(versionNamer), project.getPackaging());
+        }
+
+        private boolean isPreviousReleaseResolvable(Resolver resolver, VersionNamer versionNamer, Log log) {
+            if (previousReleaseResolvable == null) {
+                previousReleaseResolvable = resolver.isResolvable(project.getGroupId(), project.getArtifactId(), equivalentVersion(versionNamer), project.getPackaging(), log);
             }
+            return previousReleaseResolvable;
         }
-        return remoteBuildNumbers;
+    }
+
+    private static Collection<Long> getRemoteBuildNumbers(ReleaseTagIndex allTags, String artifactId, String versionWithoutBuildNumber, VersionNamer versionNamer) {
+        String tagWithoutBuildNumber = artifactId + "-" + versionWithoutBuildNumber;
+        return allTags.buildNumbersFor(tagWithoutBuildNumber, versionNamer.getDelimiter());
     }
 
     private static boolean atLeastOneBeingReleased(List<ReleasableModule> modules) {
@@ -207,17 +331,23 @@ public class Reactor {
     }
 
     public ReleasableModule findByLabel(String label) {
-        for (ReleasableModule module : modulesInBuildOrder) {
-            String currentLabel = module.getGroupId() + ":" + module.getArtifactId();
-            if (currentLabel.equals(label)) {
-                return module;
-            }
+        int separator = label.indexOf(':');
+        if (separator < 0) {
+            return null;
         }
-        return null;
+        return findModule(label.substring(0, separator), label.substring(separator + 1));
+    }
+
+    /**
+     * @return The module with the given groupId and artifactId, or null if it is not in this reactor
+     */
+    public ReleasableModule findModule(String groupId, String artifactId) {
+        Map<String, ReleasableModule> group = modulesByGroupAndArtifact.get(groupId);
+        return group == null ? null : group.get(artifactId);
     }
 
     public ReleasableModule find(String groupId, String artifactId, String version) throws UnresolvedSnapshotDependencyException {
-        ReleasableModule value = findByLabel(groupId + ":" + artifactId);
+        ReleasableModule value = findModule(groupId, artifactId);
         if (value == null) {
             throw new UnresolvedSnapshotDependencyException(groupId, artifactId, version);
         }
@@ -0,0 +1,9 @@
+package com.github.danielflower.mavenplugins.release;
+
+/**
+ * How the release build is run: in a new Maven process, inside the Maven process that is running the plugin, or
+ * by a Maven daemon.
+ */
+public enum ReleaseBuildStrategy {
+    Fork, InProcess, Mvnd
+}
@@ -1,17 +1,27 @@
 package com.github.danielflower.mavenplugins.release;
 
 import static java.lang.String.format;
+import static java.util.Arrays.asList;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.shared.invoker.DefaultInvocationRequest;
 import org.apache.maven.shared.invoker.DefaultInvoker;
+import org.apache.maven.shared.invoker.InvocationOutputHandler;
 import org.apache.maven.shared.invoker.InvocationRequest;
 import org.apache.maven.shared.invoker.InvocationResult;
 import org.apache.maven.shared.invoker.Invoker;
@@ -24,6 +34,8 @@ import org.apache.maven.shared.invoker.MavenInvocationException;
 class ReleaseInvoker {
 	static final String DEPLOY = "deploy";
 	static final String SKIP_TESTS = "-DskipTests=true";
+	static final String EXT_CLASS_PATH = "maven.ext.class.path";
+	static final int DEFAULT_PROJECT_LIST_FILE_THRESHOLD = 100;
 	private final Log log;
 	private final MavenProject project;
 	private final InvocationRequest request;
@@ -33,6 +45,11 @@ class ReleaseInvoker {
 	private List<String> modulesToRelease;
 	private List<String> releaseProfiles;
 	private String arguments;
+	private boolean pomsRewritten = true;
+	private String threads;
+	private int concurrentBuilds = 1;
+	private int projectListFileThreshold = DEFAULT_PROJECT_LIST_FILE_THRESHOLD;
+	private int availableProcessors = Runtime.getRuntime().availableProcessors();
 
 	public ReleaseInvoker(final Log log, final MavenProject project) {
 		this(log, project, new DefaultInvocationRequest(), new DefaultInvoker());
@@ -78,6 +95,42 @@ class ReleaseInvoker {
 		this.skipTests = skipTests;
 	}
 
+	/**
+	 * @param pomsRewritten False if the POMs still have their snapshot versions, in which case the release
+	 *                      versions are given to the build by {@link ReleaseVersionsModelProcessor}
+	 */
+	final void setPomsRewritten(final boolean pomsRewritten) {
+		this.pomsRewritten = pomsRewritten;
+	}
+
+	/**
+	 * @param threadsOrNull The <code>-T</code> option for the build, e.g. <code>4</code> or <code>1C</code>, or null
+	 *                      to work out the number of threads from the modules being released
+	 */
+	final void setThreads(final String threadsOrNull) {
+		threads = threadsOrNull;
+	}
+
+	/**
+	 * @param concurrentBuilds If more than 1, the modules being released are split into groups that do not depend
+	 *                         on each other, and each group is built by its own build, this many at a time
+	 */
+	final void setConcurrentBuilds(final int concurrentBuilds) {
+		this.concurrentBuilds = concurrentBuilds;
+	}
+
+	/**
+	 * @param projectListFileThreshold The most modules to give the build on the command line. More than this are
+	 *                                 given to it in a file that {@link ReleaseProjectSelector} reads.
+	 */
+	final void setProjectListFileThreshold(final int projectListFileThreshold) {
+		this.projectListFileThreshold = projectListFileThreshold;
+	}
+
+	final void setAvailableProcessors(final int availableProcessors) {
+		this.availableProcessors = availableProcessors;
+	}
+
 	final void setGlobalSettings(final File globalSettings) {
 		request.setGlobalSettingsFile(globalSettings);
 	}
@@ -106,20 +159,38 @@ class ReleaseInvoker {
 
 		request.setAlsoMake(true);
 		final List<String> changedModules = new ArrayList<String>();
+		final List<Integer> changedModuleIndexes = new ArrayList<Integer>();
 		final List<String> modulesToRelease = getModulesToRelease();
-		for (final ReleasableModule releasableModule : reactor.getModulesInBuildOrder()) {
+		final List<ReleasableModule> modulesInBuildOrder = reactor.getModulesInBuildOrder();
+		for (int i = 0; i < modulesInBuildOrder.size(); i++) {
+			final ReleasableModule releasableModule = modulesInBuildOrder.get(i);
 			final String modulePath = releasableModule.getRelativePathToModule();
 			final boolean userExplicitlyWantsThisToBeReleased = modulesToRelease.contains(modulePath);
 			final boolean userImplicitlyWantsThisToBeReleased = modulesToRelease.isEmpty();
 			if (userExplicitlyWantsThisToBeReleased
 					|| (userImplicitlyWantsThisToBeReleased && releasableModule.willBeReleased())) {
 				changedModules.add(modulePath);
+				changedModuleIndexes.add(i);
 			}
 		}
-		request.setProjects(changedModules);
+		selectProjects(request, changedModules);
+
+		if (!pomsRewritten) {
+			request.setProperties(releaseVersionProperties(reactor));
+		}
 
 		final String profilesInfo = profiles.isEmpty() ? "no profiles activated" : "profiles " + profiles;
 
+		final ModuleDependencyGraph graph = changedModuleIndexes.isEmpty() ? null : graphOf(modulesInBuildOrder);
+		if (concurrentBuilds > 1 && changedModuleIndexes.size() > 1) {
+			final List<List<Integer>> groups = graph.independentGroupsOf(changedModuleIndexes);
+			if (groups.size() > 1) {
+				runGroupsConcurrently(modulesInBuildOrder, graph, groups, profilesInfo);
+				return;
+			}
+		}
+
+		request.setThreads(threadsFor(graph, changedModuleIndexes, availableProcessors));
 		log.info(format("About to run mvn %s with %s", goals, profilesInfo));
 
 		try {
@@ -132,6 +203,241 @@ class ReleaseInvoker {
 		}
 	}
 
+	/**
+	 * Runs a separate build for each group of modules, so that a failure in one group does not stop the others.
+	 * All of the builds are run to the end before the failures of any of them are reported, in a
+	 * {@link GroupBuildException} that says which groups were built.
+	 */
+	private void runGroupsConcurrently(final List<ReleasableModule> modulesInBuildOrder, final ModuleDependencyGraph graph,
+			final List<List<Integer>> groups, final String profilesInfo) throws MojoExecutionException {
+		final int concurrency = Math.min(concurrentBuilds, groups.size());
+		final int processorsPerBuild = Math.max(1, availableProcessors / concurrency);
+		log.info(format("The modules being released form %d independent groups, which will be built %d at a time",
+				groups.size(), concurrency));
+
+		final List<List<String>> groupModules = new ArrayList<List<String>>();
+		final List<Future<InvocationResult>> builds = new ArrayList<Future<InvocationResult>>();
+		final ExecutorService executor = DaemonExecutors.fixed("release-build", concurrency);
+		try {
+			for (int i = 0; i < groups.size(); i++) {
+				final List<String> paths = new ArrayList<String>();
+				for (final int module : groups.get(i)) {
+					paths.add(modulesInBuildOrder.get(module).getRelativePathToModule());
+				}
+				groupModules.add(paths);
+				final String prefix = format("[%d/%d] ", i + 1, groups.size());
+				final InvocationRequest groupRequest = requestFor(paths, threadsFor(graph, groups.get(i), processorsPerBuild), prefix);
+				log.info(format("%sAbout to run mvn %s with %s for %s", prefix, groupRequest.getGoals(), profilesInfo, paths));
+				builds.add(executor.submit(() -> invoker.execute(groupRequest)));
+			}
+
+			final List<String> failures = new ArrayList<String>();
+			final List<String> builtModules = new ArrayList<String>();
+			Throwable firstError = null;
+			for (int i = 0; i < builds.size(); i++) {
+				try {
+					final int exitCode = builds.get(i).get().getExitCode();
+					if (exitCode != 0) {
+						failures.add(format("Maven execution for %s returned code %d", groupModules.get(i), exitCode));
+					} else {
+						builtModules.addAll(groupModules.get(i));
+					}
+				} catch (final ExecutionException e) {
+					failures.add(format("Maven execution for %s failed: %s", groupModules.get(i), e.getCause().getMessage()));
+					if (firstError == null) {
+						firstError = e.getCause();
+					}
+				}
+			}
+			if (!failures.isEmpty()) {
+				for (final String failure : failures) {
+					log.error(failure);
+				}
+				throw new GroupBuildException(format("The release build failed for %d of %d groups of modules: %s",
+						failures.size(), groups.size(), failures), builtModules, firstError);
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while waiting for the release builds", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return A copy of every setting of the configured request, building the given modules with each line of
+	 * output prefixed
+	 */
+	private InvocationRequest requestFor(final List<String> modules, final String threads, final String outputPrefix) throws MojoExecutionException {
+		final InvocationRequest copy = copyOf(request);
+		copy.setThreads(threads);
+		selectProjects(copy, modules);
+		final InvocationOutputHandler output = request.getOutputHandler(null);
+		if (output != null) {
+			copy.setOutputHandler(line -> output.consumeLine(outputPrefix + line));
+		}
+		final InvocationOutputHandler errors = request.getErrorHandler(null);
+		if (errors != null) {
+			copy.setErrorHandler(line -> errors.consumeLine(outputPrefix + line));
+		}
+		return copy;
+	}
+
+	/**
+	 * @return A request with all of the settings of the given one
+	 */
+	static InvocationRequest copyOf(final InvocationRequest request) {
+		final InvocationRequest copy = new DefaultInvocationRequest();
+		copy.setBatchMode(request.isBatchMode());
+		copy.setOffline(request.isOffline());
+		copy.setUpdateSnapshots(request.isUpdateSnapshots());
+		copy.setRecursive(request.isRecursive());
+		copy.setProjects(request.getProjects() == null ? null : new ArrayList<String>(request.getProjects()));
+		copy.setAlsoMake(request.isAlsoMake());
+		copy.setAlsoMakeDependents(request.isAlsoMakeDependents());
+		copy.setResumeFrom(request.getResumeFrom());
+		copy.setDebug(request.isDebug());
+		copy.setShowErrors(request.isShowErrors());
+		copy.setShellEnvironmentInherited(request.isShellEnvironmentInherited());
+		copy.setNonPluginUpdates(request.isNonPluginUpdates());
+		copy.setReactorFailureBehavior(request.getReactorFailureBehavior());
+		copy.setLocalRepositoryDirectory(request.getLocalRepositoryDirectory(null));
+		copy.setInputStream(request.getInputStream(null));
+		copy.setOutputHandler(request.getOutputHandler(null));
+		copy.setErrorHandler(request.getErrorHandler(null));
+		copy.setPomFile(request.getPomFile());
+		copy.setPomFileName(request.getPomFileName());
+		copy.setBaseDirectory(request.getBaseDirectory());
+		copy.setJavaHome(request.getJavaHome());
+		if (request.getProperties() != null) {
+			final Properties properties = new Properties();
+			properties.putAll(request.getProperties());
+			copy.setProperties(properties);
+		}
+		copy.setGoals(request.getGoals() == null ? null : new ArrayList<String>(request.getGoals()));
+		copy.setUserSettingsFile(request.getUserSettingsFile());
+		copy.setGlobalSettingsFile(request.getGlobalSettingsFile());
+		copy.setToolchainsFile(request.getToolchainsFile());
+		copy.setGlobalToolchainsFile(request.getGlobalToolchainsFile());
+		copy.setGlobalChecksumPolicy(request.getGlobalChecksumPolicy());
+		copy.setProfiles(request.getProfiles() == null ? null : new ArrayList<String>(request.getProfiles()));
+		if (request.getShellEnvironments() != null) {
+			for (final Map.Entry<String, String> variable : request.getShellEnvironments().entrySet()) {
+				copy.addShellEnvironment(variable.getKey(), variable.getValue());
+			}
+		}
+		copy.setMavenOpts(request.getMavenOpts());
+		copy.setShowVersion(request.isShowVersion());
+		copy.setThreads(request.getThreads());
+		copy.setQuiet(request.isQuiet());
+		copy.setBuilder(request.getBuilder());
+		copy.setTimeoutInSeconds(request.getTimeoutInSeconds());
+		return copy;
+	}
+
+	private static ModuleDependencyGraph graphOf(final List<ReleasableModule> modulesInBuildOrder) {
+		final List<MavenProject> projects = new ArrayList<MavenProject>();
+		for (final ReleasableModule module : modulesInBuildOrder) {
+			projects.add(module.getProject());
+		}
+		return ModuleDependencyGraph.of(projects);
+	}
+
+	/**
+	 * @return The <code>-T</code> option for the build, or null to build with one thread. Unless it has been set,
+	 * this is as many threads as there are modules in the build that can be built at the same time, up to the
+	 * given number of processors.
+	 */
+	private String threadsFor(final ModuleDependencyGraph graph, final List<Integer> changedModuleIndexes, final int processors) {
+		if (changedModuleIndexes.isEmpty()) {
+			return threads;
+		}
+		final List<Integer> built = graph.withUpstreamOf(changedModuleIndexes);
+		final int width = graph.widthOf(built);
+		final int criticalPath = graph.longestChainIn(built);
+		final int computed = Math.max(1, Math.min(width, processors));
+		log.info(format("The release build has %d modules, at most %d of which can be built at the same time, "
+				+ "and a critical path of %d modules", built.size(), width, criticalPath));
+		if (threads != null) {
+			log.info(format("Building with %s threads as configured", threads));
+			return threads;
+		}
+		log.info(format("Building with %d %s", computed, computed == 1 ? "thread" : "threads"));
+		return computed == 1 ? null : String.valueOf(computed);
+	}
+
+	private Properties releaseVersionProperties(final Reactor reactor) throws MojoExecutionException {
+		final Properties properties = new Properties();
+		if (request.getProperties() != null) {
+			properties.putAll(request.getProperties());
+		}
+		try {
+			final File versionsFile = File.createTempFile("release-versions", ".properties");
+			versionsFile.deleteOnExit();
+			ReleaseVersions.write(versionsFile, reactor.getModulesInBuildOrder());
+			properties.setProperty(ReleaseVersionsModelProcessor.VERSIONS_FILE_PROPERTY, versionsFile.getAbsolutePath());
+		} catch (final IOException e) {
+			throw new MojoExecutionException("Could not write the release versions for the build", e);
+		}
+
+		addExtension(properties);
+		return properties;
+	}
+
+	/**
+	 * Gives the modules to the build with <code>-pl</code>, or, if there are more than the threshold, in a file
+	 * read by {@link ReleaseProjectSelector}, as a long list can be more than the command line of some systems
+	 * can take.
+	 */
+	private void selectProjects(final InvocationRequest selecting, final List<String> modules) throws MojoExecutionException {
+		final Properties inherited = selecting.getProperties();
+		if (modules.size() <= projectListFileThreshold) {
+			selecting.setProjects(modules);
+			if (inherited != null && inherited.containsKey(ReleaseProjectSelector.PROJECTS_FILE_PROPERTY)) {
+				final Properties properties = new Properties();
+				properties.putAll(inherited);
+				properties.remove(ReleaseProjectSelector.PROJECTS_FILE_PROPERTY);
+				selecting.setProperties(properties);
+			}
+			return;
+		}
+
+		final Properties properties = new Properties();
+		if (inherited != null) {
+			properties.putAll(inherited);
+		}
+		try {
+			final File projectsFile = File.createTempFile("release-projects", ".txt");
+			projectsFile.deleteOnExit();
+			ReleaseProjectSelector.writeProjects(projectsFile, modules);
+			properties.setProperty(ReleaseProjectSelector.PROJECTS_FILE_PROPERTY, projectsFile.getAbsolutePath());
+			log.info(format("Giving the %d modules to build to Maven in %s", modules.size(), projectsFile));
+		} catch (final IOException e) {
+			throw new MojoExecutionException("Could not write the modules to release for the build", e);
+		}
+		addExtension(properties);
+		selecting.setProjects(new ArrayList<String>());
+		selecting.setProperties(properties);
+	}
+
+	private static void addExtension(final Properties properties) throws MojoExecutionException {
+		final String extension = extensionJar().getAbsolutePath();
+		final String existing = properties.getProperty(EXT_CLASS_PATH);
+		if (existing == null || existing.isEmpty()) {
+			properties.setProperty(EXT_CLASS_PATH, extension);
+		} else if (!asList(existing.split(Pattern.quote(File.pathSeparator))).contains(extension)) {
+			properties.setProperty(EXT_CLASS_PATH, existing + File.pathSeparator + extension);
+		}
+	}
+
+	private static File extensionJar() throws MojoExecutionException {
+		try {
+			return new File(ReleaseVersionsModelProcessor.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		} catch (final URISyntaxException | RuntimeException e) {
+			throw new MojoExecutionException("Could not find the jar of the release plugin to load it into the build", e);
+		}
+	}
+
 	private List<String> profilesToActivate() {
 		final List<String> profiles = new ArrayList<String>();
 		if (getReleaseProfilesOrNull() != null) {
@@ -0,0 +1,206 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records releases in a chain of commits on a single ref, rather than with an annotated tag for each module.
+ * <p>
+ * Each release run adds one commit with an empty tree to {@value #REF}. After a summary line, its message has one
+ * line per released module in the form {@code commitId tagName version buildNumber}, where the tag name is the
+ * name the release tag would have had. The records are presented as tag refs, so they can be indexed and looked
+ * up in the same way as the tags themselves.
+ * </p>
+ */
+public class ReleaseLedger {
+
+    public static final String REF = "refs/releases/ledger";
+
+    private final Repository repository;
+
+    public ReleaseLedger(Repository repository) {
+        Guard.notNull("repository", repository);
+        this.repository = repository;
+    }
+
+    /**
+     * @return A tag ref for each release in the ledger, newest first. If a release was recorded more than once
+     * then only the newest record is returned.
+     */
+    public List<Ref> records() throws IOException {
+        Ref ledger = repository.exactRef(REF);
+        if (ledger == null) {
+            return new ArrayList<Ref>();
+        }
+        Map<String, Ref> records = new LinkedHashMap<String, Ref>();
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.markStart(walk.parseCommit(ledger.getObjectId()));
+            for (RevCommit commit : walk) {
+                for (String line : commit.getFullMessage().split("\n")) {
+                    Record entry = Record.parse(line);
+                    if (entry != null) {
+                        records.putIfAbsent(entry.getName(), entry);
+                    }
+                }
+            }
+        }
+        return new ArrayList<Ref>(records.values());
+    }
+
+    /**
+     * Adds a commit to the ledger recording the given releases of the given commit.
+     */
+    public void append(Collection<AnnotatedTag> tags, ObjectId commitId) throws IOException {
+        StringBuilder message = new StringBuilder("Released " + tags.size() + " module(s)\n\n");
+        for (AnnotatedTag tag : tags) {
+            message.append(new Record(AnnotatedTag.TAG_PREFIX + tag.name(), commitId, tag.version(), tag.buildNumber()).line()).append('\n');
+        }
+
+        Ref current = repository.exactRef(REF);
+        ObjectId ledgerId;
+        try (ObjectInserter inserter = repository.newObjectInserter()) {
+            PersonIdent ident = new PersonIdent(repository);
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(inserter.insert(new TreeFormatter()));
+            if (current != null) {
+                commit.setParentId(current.getObjectId());
+            }
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage(message.toString());
+            ledgerId = inserter.insert(commit);
+            inserter.flush();
+        }
+
+        RefUpdate update = repository.updateRef(REF);
+        update.setNewObjectId(ledgerId);
+        update.setExpectedOldObjectId(current == null ? ObjectId.zeroId() : current.getObjectId());
+        update.setRefLogMessage("release", false);
+        RefUpdate.Result result = update.update();
+        if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FAST_FORWARD) {
+            throw new IOException("Could not update " + REF + ": " + result);
+        }
+    }
+
+    /**
+     * Moves the ledger back to the given commit, discarding anything appended since, or deletes it if the
+     * commit is null.
+     */
+    public void resetTo(ObjectId ledgerId) throws IOException {
+        RefUpdate update = repository.updateRef(REF);
+        update.setForceUpdate(true);
+        RefUpdate.Result result;
+        if (ledgerId == null) {
+            result = repository.exactRef(REF) == null ? RefUpdate.Result.NO_CHANGE : update.delete();
+        } else {
+            update.setNewObjectId(ledgerId);
+            update.setRefLogMessage("release: reset", false);
+            result = update.update();
+        }
+        if (result != RefUpdate.Result.NO_CHANGE && result != RefUpdate.Result.FORCED && result != RefUpdate.Result.FAST_FORWARD
+            && result != RefUpdate.Result.NEW) {
+            throw new IOException("Could not reset " + REF + ": " + result);
+        }
+    }
+
+    /**
+     * A release read from the ledger, as a tag ref that is already peeled to the released commit.
+     */
+    static final class Record implements Ref {
+        private final String name;
+        private final ObjectId commitId;
+        private final String version;
+        private final long buildNumber;
+
+        Record(String name, ObjectId commitId, String version, long buildNumber) {
+            this.name = name;
+            this.commitId = commitId;
+            this.version = version;
+            this.buildNumber = buildNumber;
+        }
+
+        static Record parse(String line) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length != 4 || !ObjectId.isId(parts[0])) {
+                return null;
+            }
+            try {
+                return new Record(AnnotatedTag.TAG_PREFIX + parts[1], ObjectId.fromString(parts[0]), parts[2], Long.parseLong(parts[3]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        String line() {
+            return commitId.name() + " " + AnnotatedTag.stripRefPrefix(name) + " " + version + " " + buildNumber;
+        }
+
+        String version() {
+            return version;
+        }
+
+        long buildNumber() {
+            return buildNumber;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean isSymbolic() {
+            return false;
+        }
+
+        @Override
+        public Ref getLeaf() {
+            return this;
+        }
+
+        @Override
+        public Ref getTarget() {
+            return this;
+        }
+
+        @Override
+        public ObjectId getObjectId() {
+            return commitId;
+        }
+
+        @Override
+        public ObjectId getPeeledObjectId() {
+            return null;
+        }
+
+        @Override
+        public boolean isPeeled() {
+            return true;
+        }
+
+        @Override
+        public Storage getStorage() {
+            return Storage.NEW;
+        }
+
+        @Override
+        public String toString() {
+            return "ReleaseLedger.Record[" + line() + "]";
+        }
+    }
+}
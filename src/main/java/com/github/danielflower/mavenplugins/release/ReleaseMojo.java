@@ -1,20 +1,28 @@
 package com.github.danielflower.mavenplugins.release;
 
+import org.apache.maven.Maven;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.DistributionManagement;
+import org.apache.maven.plugin.LegacySupport;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
 import org.apache.maven.settings.io.DefaultSettingsWriter;
 import org.apache.maven.shared.invoker.DefaultInvocationRequest;
 import org.apache.maven.shared.invoker.DefaultInvoker;
 import org.apache.maven.shared.invoker.InvocationOutputHandler;
+import org.apache.maven.shared.invoker.Invoker;
 import org.eclipse.jgit.api.errors.GitAPIException;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.Path;
 import java.util.*;
 
 import static java.util.Arrays.asList;
@@ -72,6 +80,85 @@ public class ReleaseMojo extends BaseMojo {
      */
     @Parameter(alias = "skipTests", defaultValue = "false", property = "skipTests")
     private boolean skipTests;
+
+    /**
+     * <p>
+     * If false then the POMs are not changed on disk. The release versions are instead given to the release build
+     * by loading this plugin into it as a core extension, which sets the versions as each POM is read. This leaves
+     * the working tree untouched and means nothing has to be reverted afterwards. The POMs that are installed and
+     * deployed are copies with the release versions, written to a temporary directory.
+     * </p>
+     * <p>
+     * Modules with Eclipse metadata, such as <code>eclipse-plugin</code> modules, need the POMs to be rewritten.
+     * </p>
+     */
+    @Parameter(alias = "rewritePoms", defaultValue = "true", property = "rewritePoms")
+    private boolean rewritePoms = true;
+
+    /**
+     * <p>
+     * How the release build is run. {@code Fork} starts a new Maven process. {@code InProcess} runs the release
+     * goals inside the Maven process that is running this plugin, which saves starting a JVM and loading Maven
+     * and its plugins again.
+     * </p>
+     * <p>
+     * An in-process build uses the settings of the current build, so it cannot be combined with
+     * <code>userSettings</code> or <code>globalSettings</code>, and needs the POMs to be rewritten. Only
+     * <code>-D</code> and <code>-P</code> options can be given in <code>arguments</code>.
+     * </p>
+     * <p>
+     * {@code Mvnd} runs the release build with the Maven daemon client, which reuses a running daemon that has
+     * Maven and the plugins already loaded. It is given the same command line as a forked build, except that the
+     * modules are always listed on it, whatever <code>projectListFileThreshold</code> is. As the daemon outlives
+     * the build, the release versions can not be given to it by an extension, so it needs the POMs to be rewritten.
+     * </p>
+     */
+    @Parameter(alias = "releaseBuild", defaultValue = "Fork", property = "releaseBuild")
+    private ReleaseBuildStrategy releaseBuild;
+
+    /**
+     * The mvnd client to run the release build with when <code>releaseBuild</code> is {@code Mvnd}. If not set,
+     * the client is looked for in <code>$MVND_HOME/bin</code> and then on the <code>PATH</code>.
+     */
+    @Parameter(alias = "mvndExecutable", property = "mvndExecutable")
+    private File mvndExecutable;
+
+    /**
+     * The number of threads to run the release build with, as given to the <code>-T</code> option of Maven, e.g.
+     * <code>4</code> or <code>1C</code>. If not set, the build uses as many threads as there are modules in it that
+     * can be built at the same time, up to the number of processors.
+     */
+    @Parameter(alias = "releaseBuildThreads", property = "releaseBuildThreads")
+    private String releaseBuildThreads;
+
+    /**
+     * If more than 1, the modules being released are split into groups that share no modules, and each group is
+     * released by its own build, with up to this many builds running at the same time. A build that fails does
+     * not stop the builds of the other groups, and the failures of all of them are reported together. The default
+     * of 1 releases all of the modules in one build.
+     */
+    @Parameter(alias = "concurrentReleaseBuilds", defaultValue = "1", property = "concurrentReleaseBuilds")
+    private int concurrentReleaseBuilds;
+
+    /**
+     * The most modules to list on the command line of the release build. If more are being released, they are
+     * given to the build in a file instead, which keeps the command line within the limits of the system. Only a
+     * {@code Fork} release build is given a file.
+     */
+    @Parameter(alias = "projectListFileThreshold", defaultValue = "100", property = "projectListFileThreshold")
+    private int projectListFileThreshold = ReleaseInvoker.DEFAULT_PROJECT_LIST_FILE_THRESHOLD;
+
+    @Parameter(defaultValue = "${session}", readonly = true, required = true)
+    private MavenSession session;
+
+    /**
+     * Runs the release build when it is run in process.
+     */
+    @Component
+    private Maven maven;
+
+    @Component
+    private LegacySupport legacySupport;
     
 	/**
 	 * Specifies a custom, user specific Maven settings file to be used during the release build.
@@ -160,22 +247,28 @@ public class ReleaseMojo extends BaseMojo {
                 .remoteGitUrl(getRemoteUrlOrNullIfNoneSet(project.getOriginalModel().getScm(),
                                                           project.getModel().getScm()))
                 .credentialsProvider(getCredentialsProvider(log))
+                .releaseStorage(releaseStorage == null ? ReleaseStorage.Tags : releaseStorage)
+                .log(log)
                 .buildFromCurrentDir();
-            repo.errorIfNotClean(ignoredUntrackedPaths);
+            repo.revertChangesLeftByEarlierRelease(log);
+            repo.errorIfNotClean(ignoredUntrackedPaths, modulePathsIn(repo));
+            errorIfReleaseBuildCannotRun();
             
             // If a test resolver has not been injected, use the real resolver
             if (resolverWrapper == null) {
-            	resolverWrapper = new ResolverWrapper(factory, artifactResolver, remoteRepositories, localRepository);
+            	resolverWrapper = newResolver();
             }
             
-            Reactor reactor = Reactor.fromProjects(log, repo, project, projects, buildNumber, modulesToForceRelease, noChangesAction, resolverWrapper, versionNamer);
+            Reactor reactor = Reactor.fromProjects(log, repo, project, projects, buildNumber, modulesToForceRelease, noChangesAction, resolverWrapper, versionNamer, analysisThreads);
             if (reactor == null) {
                 return;
             }
 
             List<AnnotatedTag> proposedTags = figureOutTagNamesAndThrowIfAlreadyExists(reactor.getModulesInBuildOrder(), repo, modulesToRelease);
 
-            List<File> changedFiles = updatePomsAndReturnChangedFiles(log, repo, reactor);
+            List<File> changedFiles = rewritePoms
+                ? updatePomsAndReturnChangedFiles(log, repo, reactor, analysisThreads)
+                : checkVersionsWithoutChangingFiles(log, reactor);
 
             if (versionReports != null) {
                 for (VersionReport versionReport : versionReports) {
@@ -190,7 +283,7 @@ public class ReleaseMojo extends BaseMojo {
 
             try {
             	DefaultInvocationRequest invocationRequest = new DefaultInvocationRequest();
-				final ReleaseInvoker invoker = new ReleaseInvoker(getLog(), project, invocationRequest, new DefaultInvoker());
+				final ReleaseInvoker invoker = new ReleaseInvoker(getLog(), project, invocationRequest, newInvoker(log));
             	invocationRequest.setOutputHandler(new InvocationOutputHandler() {
 
 					@Override
@@ -203,7 +296,7 @@ public class ReleaseMojo extends BaseMojo {
             	invoker.setGlobalSettings(globalSettings);
                 if (userSettings != null) {
                     invoker.setUserSettings(userSettings);
-                } else if (getSettings() != null) {
+                } else if (getSettings() != null && releaseBuild() != ReleaseBuildStrategy.InProcess) {
                     File settingsFile = File.createTempFile("tmp", ".xml");
                     settingsFile.deleteOnExit();
                     new DefaultSettingsWriter().write(settingsFile, null, getSettings());
@@ -214,8 +307,20 @@ public class ReleaseMojo extends BaseMojo {
             	invoker.setReleaseProfiles(releaseProfiles);
             	invoker.setSkipTests(skipTests);
             	invoker.setArguments(arguments);
-
-                invoker.runMavenBuild(reactor);
+            	invoker.setPomsRewritten(rewritePoms);
+            	invoker.setThreads(releaseBuildThreads);
+            	invoker.setConcurrentBuilds(concurrentReleaseBuilds);
+            	// an in-process build is given the modules directly, without a command line, and the extension that
+            	// reads a module list file is not reloaded by the mvnd daemon between builds
+            	invoker.setProjectListFileThreshold(releaseBuild() == ReleaseBuildStrategy.Fork ? projectListFileThreshold : Integer.MAX_VALUE);
+
+                try {
+                    invoker.runMavenBuild(reactor);
+                } catch (GroupBuildException e) {
+                    recordPublishedArtifacts(log, modulesAt(reactor.getModulesInBuildOrder(), e.getBuiltModules()));
+                    throw e;
+                }
+                recordPublishedArtifacts(log, reactor.getModulesInBuildOrder());
                 revertChanges(log, repo, changedFiles, true); // throw if you can't revert as that is the root problem
             } finally {
                 revertChanges(log, repo, changedFiles, false); // warn if you can't revert but keep throwing the original exception so the root cause isn't lost
@@ -243,12 +348,182 @@ public class ReleaseMojo extends BaseMojo {
         }
     }
 
-    private void tagAndPushRepo(Log log, LocalGitRepo repo, List<AnnotatedTag> proposedTags) throws GitAPIException {
+    private ReleaseBuildStrategy releaseBuild() {
+        return releaseBuild == null ? ReleaseBuildStrategy.Fork : releaseBuild;
+    }
+
+    private void errorIfReleaseBuildCannotRun() throws ValidationException {
+        if (releaseBuild() == ReleaseBuildStrategy.Mvnd && mvnd() == null) {
+            String summary = "Cannot find the mvnd client to run the release build with";
+            List<String> messages = new ArrayList<String>();
+            messages.add(summary);
+            messages.add(mvndExecutable == null
+                ? " * mvndExecutable is not set, and there is no mvnd in $" + MvndInvoker.MVND_HOME + "/bin or on the PATH"
+                : " * mvndExecutable is set to " + mvndExecutable + ", which is not a file");
+            messages.add("Set mvndExecutable to the mvnd client, or set releaseBuild to Fork.");
+            throw new ValidationException(summary, messages);
+        }
+        if (releaseBuild() == ReleaseBuildStrategy.Mvnd && !rewritePoms) {
+            String summary = "Cannot run the release build with mvnd";
+            List<String> messages = new ArrayList<String>();
+            messages.add(summary);
+            messages.add(" * rewritePoms is false, but the release versions are given to the build by an extension that"
+                + " reads them once, and the mvnd daemon outlives the build");
+            messages.add("Set rewritePoms to true, or set releaseBuild to Fork.");
+            throw new ValidationException(summary, messages);
+        }
+        if (releaseBuild() != ReleaseBuildStrategy.InProcess) {
+            return;
+        }
+        List<String> problems = new ArrayList<String>();
+        if (!rewritePoms) {
+            problems.add(" * rewritePoms is false, but the release versions can only be given to an in-process build in the POMs");
+        }
+        if (userSettings != null || globalSettings != null) {
+            problems.add(" * userSettings or globalSettings is set, but an in-process build uses the settings of the current build");
+        }
+        if (concurrentReleaseBuilds > 1) {
+            problems.add(" * concurrentReleaseBuilds is " + concurrentReleaseBuilds + ", but only one build at a time can run in process");
+        }
+        if (!problems.isEmpty()) {
+            String summary = "Cannot run the release build in process";
+            List<String> messages = new ArrayList<String>();
+            messages.add(summary);
+            messages.addAll(problems);
+            messages.add("Set releaseBuild to Fork to release with this configuration.");
+            throw new ValidationException(summary, messages);
+        }
+    }
+
+    private Invoker newInvoker(Log log) {
+        if (releaseBuild() == ReleaseBuildStrategy.InProcess) {
+            return new InProcessInvoker(log, maven, session, legacySupport);
+        }
+        if (releaseBuild() == ReleaseBuildStrategy.Mvnd) {
+            return new MvndInvoker(mvnd());
+        }
+        return new DefaultInvoker();
+    }
+
+    private File mvnd() {
+        return MvndInvoker.findMvnd(mvndExecutable, System.getenv());
+    }
+
+    private List<String> modulePathsIn(LocalGitRepo repo) {
+        return modulePathsIn(repo.git.getRepository().getWorkTree(), projects);
+    }
+
+    /**
+     * @return The directories of the reactor projects relative to the root of the working tree, or an empty path
+     * (meaning the whole working tree) if that cannot be worked out. A <code>pom</code> project at the root of the
+     * working tree, such as an aggregator, gives just its POM, so that the files around the modules are not checked.
+     */
+    static List<String> modulePathsIn(File workTreeDir, List<MavenProject> projects) {
+        List<String> paths = new ArrayList<String>();
+        try {
+            Path workTree = workTreeDir.getCanonicalFile().toPath();
+            for (MavenProject reactorProject : projects) {
+                Path dir = reactorProject.getBasedir() == null ? null : reactorProject.getBasedir().getCanonicalFile().toPath();
+                if (dir == null || !dir.startsWith(workTree)) {
+                    return Collections.singletonList("");
+                }
+                String path = workTree.relativize(dir).toString().replace(File.separatorChar, '/');
+                if (path.isEmpty()) {
+                    if (!"pom".equals(reactorProject.getPackaging())) {
+                        return Collections.singletonList("");
+                    }
+                    path = reactorProject.getFile().getName();
+                }
+                paths.add(path);
+            }
+        } catch (IOException e) {
+            return Collections.singletonList("");
+        }
+        return paths;
+    }
+
+    private void tagAndPushRepo(Log log, LocalGitRepo repo, List<AnnotatedTag> proposedTags) throws GitAPIException, ValidationException {
         for (AnnotatedTag proposedTag : proposedTags) {
             log.info("About to tag the repository with " + proposedTag.name());
         }
 
-        repo.tagAndPushRepo(proposedTags);
+        try {
+            repo.tagAndPushRepo(proposedTags);
+        } catch (TagPushException e) {
+            List<String> messages = new ArrayList<String>();
+            messages.add(e.getMessage());
+            messages.add("The status of each tag on the remote is:");
+            messages.addAll(e.statusLines());
+            throw new ValidationException(e.getMessage(), messages);
+        }
+    }
+
+    /**
+     * Remembers the modules that were just deployed, so later releases know their versions are resolvable without
+     * asking the remote repository.
+     */
+    /**
+     * Records the modules that the release build deployed, against the release repository of each, once the
+     * build has succeeded. Nothing is recorded if the build did not deploy.
+     */
+    private void recordPublishedArtifacts(Log log, List<ReleasableModule> modules) {
+        PublishedArtifactLedger ledger = publishedArtifactLedger();
+        if (ledger == null || !deploys(goals) || skipsDeploy(arguments)) {
+            return;
+        }
+        Map<String, List<ArtifactCoordinates>> deployed = new LinkedHashMap<String, List<ArtifactCoordinates>>();
+        for (ReleasableModule module : modules) {
+            if (module.willBeReleased() && (modulesToRelease == null || modulesToRelease.isEmpty() || module.isOneOf(modulesToRelease))) {
+                MavenProject project = module.getProject();
+                String repositoryUrl = releaseRepositoryUrl(project);
+                if (repositoryUrl != null) {
+                    deployed.computeIfAbsent(repositoryUrl, url -> new ArrayList<ArtifactCoordinates>())
+                        .add(new ArtifactCoordinates(project.getGroupId(), project.getArtifactId(), module.getNewVersion(), project.getPackaging()));
+                }
+            }
+        }
+        try {
+            for (Map.Entry<String, List<ArtifactCoordinates>> entry : deployed.entrySet()) {
+                ledger.add(entry.getKey(), entry.getValue());
+            }
+        } catch (IOException e) {
+            log.warn("Could not record the deployed artifacts: " + e.getMessage());
+        }
+    }
+
+    private static List<ReleasableModule> modulesAt(List<ReleasableModule> modules, List<String> paths) {
+        List<ReleasableModule> found = new ArrayList<ReleasableModule>();
+        for (ReleasableModule module : modules) {
+            if (paths.contains(module.getRelativePathToModule())) {
+                found.add(module);
+            }
+        }
+        return found;
+    }
+
+    private static String releaseRepositoryUrl(MavenProject project) {
+        DistributionManagement distributionManagement = project.getDistributionManagement();
+        if (distributionManagement == null || distributionManagement.getRepository() == null) {
+            return null;
+        }
+        String url = distributionManagement.getRepository().getUrl();
+        return url == null || url.trim().isEmpty() ? null : url;
+    }
+
+    static boolean skipsDeploy(String arguments) {
+        return arguments != null && arguments.matches("(?s).*-Dmaven\\.deploy\\.skip(=true)?(\\s.*|$)");
+    }
+
+    static boolean deploys(List<String> goals) {
+        if (goals == null || goals.isEmpty()) {
+            return true; // deploy is the default goal
+        }
+        for (String goal : goals) {
+            if ("deploy".equals(goal) || goal.endsWith(":deploy")) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private static void revertChanges(Log log, LocalGitRepo repo, List<File> changedFiles, boolean throwIfError) throws MojoExecutionException {
@@ -262,28 +537,53 @@ public class ReleaseMojo extends BaseMojo {
         }
     }
 
-    private static List<File> updatePomsAndReturnChangedFiles(Log log, LocalGitRepo repo, Reactor reactor) throws MojoExecutionException, ValidationException {
-        PomUpdater pomUpdater = new PomUpdater(log, reactor);
+    private static List<File> updatePomsAndReturnChangedFiles(Log log, LocalGitRepo repo, Reactor reactor, int threads) throws MojoExecutionException, ValidationException {
+        PomUpdater pomUpdater = new PomUpdater(log, reactor, repo.rollbackJournal(), threads);
         PomUpdater.UpdateResult result = pomUpdater.updateVersion();
         if (!result.success()) {
             log.info("Going to revert changes because there was an error.");
             repo.revertChanges(log, result.alteredPoms);
-            if (result.unexpectedException != null) {
-                throw new ValidationException("Unexpected exception while setting the release versions in the pom", result.unexpectedException);
-            } else {
-                String summary = "Cannot release with references to snapshot dependencies";
-                List<String> messages = new ArrayList<String>();
-                messages.add(summary);
-                messages.add("The following dependency errors were found:");
-                for (String dependencyError : result.dependencyErrors) {
-                    messages.add(" * " + dependencyError);
-                }
-                throw new ValidationException(summary, messages);
+            throwUpdateErrors(result);
+        }
+        return result.alteredPoms;
+    }
+
+    private static List<File> checkVersionsWithoutChangingFiles(Log log, Reactor reactor) throws ValidationException {
+        PomUpdater pomUpdater = new PomUpdater(log, reactor);
+        List<String> modulesWithEclipseMetadata = pomUpdater.modulesWithEclipseMetadata();
+        if (!modulesWithEclipseMetadata.isEmpty()) {
+            String summary = "Cannot release without rewriting the POMs";
+            List<String> messages = new ArrayList<String>();
+            messages.add(summary);
+            messages.add("The Eclipse metadata of these modules has to be rewritten with the release versions:");
+            for (String module : modulesWithEclipseMetadata) {
+                messages.add(" * " + module);
             }
+            messages.add("Set rewritePoms to true to release them.");
+            throw new ValidationException(summary, messages);
+        }
+        PomUpdater.UpdateResult result = pomUpdater.checkVersionsWithoutWriting();
+        if (!result.success()) {
+            throwUpdateErrors(result);
         }
         return result.alteredPoms;
     }
 
+    private static void throwUpdateErrors(PomUpdater.UpdateResult result) throws ValidationException {
+        if (result.unexpectedException != null) {
+            throw new ValidationException("Unexpected exception while setting the release versions in the pom", result.unexpectedException);
+        } else {
+            String summary = "Cannot release with references to snapshot dependencies";
+            List<String> messages = new ArrayList<String>();
+            messages.add(summary);
+            messages.add("The following dependency errors were found:");
+            for (String dependencyError : result.dependencyErrors) {
+                messages.add(" * " + dependencyError);
+            }
+            throw new ValidationException(summary, messages);
+        }
+    }
+
     static List<AnnotatedTag> figureOutTagNamesAndThrowIfAlreadyExists(List<ReleasableModule> modules, LocalGitRepo git, List<String> modulesToRelease) throws GitAPIException, ValidationException {
         List<AnnotatedTag> tags = new ArrayList<AnnotatedTag>();
         for (ReleasableModule module : modules) {
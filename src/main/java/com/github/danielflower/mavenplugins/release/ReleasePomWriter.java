@@ -0,0 +1,78 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.project.MavenProject;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Gives each project of a release build that leaves the POMs untouched a POM with the release versions, so that
+ * <code>install</code> and <code>deploy</code> do not publish the snapshot versions of the <code>pom.xml</code>
+ * files in the working tree.
+ * <p>
+ * When the {@value ReleaseVersionsModelProcessor#VERSIONS_FILE_PROPERTY} property is set, the POM of each reactor
+ * project, as read by {@link ReleaseVersionsModelProcessor}, is written to a temporary directory and set as the
+ * project's POM file. The project's base directory is unchanged. The directory is outside of the projects'
+ * build directories so that a <code>clean</code> in the release goals does not delete the POMs before they are
+ * installed.
+ * </p>
+ */
+@Named("multi-module-release-poms")
+@Singleton
+public class ReleasePomWriter extends AbstractMavenLifecycleParticipant {
+
+    @Override
+    public void afterProjectsRead(MavenSession session) throws MavenExecutionException {
+        String fileName = session.getUserProperties().getProperty(ReleaseVersionsModelProcessor.VERSIONS_FILE_PROPERTY,
+            session.getSystemProperties().getProperty(ReleaseVersionsModelProcessor.VERSIONS_FILE_PROPERTY));
+        ReleaseVersions versions;
+        try {
+            versions = ReleaseVersions.read(fileName);
+        } catch (IOException e) {
+            throw new MavenExecutionException("Could not read the release versions from " + fileName, e);
+        }
+        if (versions.isEmpty()) {
+            return;
+        }
+
+        File directory = null;
+        for (MavenProject project : session.getProjects()) {
+            if (!versions.isReactorPom(project.getFile())) {
+                continue;
+            }
+            try {
+                if (directory == null) {
+                    directory = Files.createTempDirectory("release-poms").toFile();
+                    directory.deleteOnExit();
+                }
+                project.setPomFile(writePom(directory, project));
+            } catch (IOException e) {
+                throw new MavenExecutionException("Could not write the release POM of " + project.getId(), e);
+            }
+        }
+    }
+
+    private static File writePom(File directory, MavenProject project) throws IOException {
+        File projectDirectory = new File(new File(directory, project.getGroupId()), project.getArtifactId());
+        if (!projectDirectory.isDirectory() && !projectDirectory.mkdirs()) {
+            throw new IOException("Could not create " + projectDirectory);
+        }
+        projectDirectory.getParentFile().deleteOnExit();
+        projectDirectory.deleteOnExit();
+        File pom = new File(projectDirectory, "pom.xml");
+        pom.deleteOnExit();
+        try (Writer writer = Files.newBufferedWriter(pom.toPath(), StandardCharsets.UTF_8)) {
+            new MavenXpp3Writer().write(writer, project.getOriginalModel());
+        }
+        return pom;
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Selects the projects of a Maven build from a file, as <code>--projects</code> and <code>--also-make</code> do
+ * from the command line.
+ * <p>
+ * {@link ReleaseInvoker} uses this when there are too many modules to release to list them on the command line.
+ * It loads this plugin into the release build as a core extension, and names a file with the path of one module
+ * on each line in the {@value #PROJECTS_FILE_PROPERTY} system property. Once the reactor has been read, it is
+ * reduced to those modules and the modules they depend on. If the property is not set, the reactor is unchanged.
+ * </p>
+ */
+@Named("multi-module-release-projects")
+@Singleton
+public class ReleaseProjectSelector extends AbstractMavenLifecycleParticipant {
+
+    public static final String PROJECTS_FILE_PROPERTY = "multiModuleRelease.projectsFile";
+
+    /**
+     * Writes the module paths, relative to the directory the build is run in, to a file that can be named by
+     * {@value #PROJECTS_FILE_PROPERTY}.
+     */
+    static void writeProjects(File file, List<String> modulePaths) throws IOException {
+        Files.write(file.toPath(), modulePaths, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void afterProjectsRead(MavenSession session) throws MavenExecutionException {
+        String fileName = session.getUserProperties().getProperty(PROJECTS_FILE_PROPERTY,
+            session.getSystemProperties().getProperty(PROJECTS_FILE_PROPERTY));
+        if (fileName == null || fileName.trim().isEmpty()) {
+            return;
+        }
+        File projectsFile = new File(fileName);
+        List<String> modulePaths;
+        try {
+            modulePaths = Files.readAllLines(projectsFile.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new MavenExecutionException("Could not read the modules to release from " + fileName, e);
+        }
+        session.setProjects(selectedProjects(session, modulePaths, projectsFile));
+    }
+
+    private static List<MavenProject> selectedProjects(MavenSession session, List<String> modulePaths, File projectsFile) throws MavenExecutionException {
+        String baseDirectory = session.getRequest().getBaseDirectory() != null
+            ? session.getRequest().getBaseDirectory()
+            : session.getExecutionRootDirectory();
+        Set<File> wanted = new LinkedHashSet<File>();
+        for (String modulePath : modulePaths) {
+            if (!modulePath.trim().isEmpty()) {
+                wanted.add(canonical(new File(baseDirectory, modulePath.trim())));
+            }
+        }
+
+        Set<MavenProject> selected = new LinkedHashSet<MavenProject>();
+        for (MavenProject project : session.getProjects()) {
+            if (wanted.remove(canonical(project.getBasedir()))) {
+                selected.add(project);
+                selected.addAll(session.getProjectDependencyGraph().getUpstreamProjects(project, true));
+            }
+        }
+        if (!wanted.isEmpty()) {
+            throw new MavenExecutionException("Could not find the modules " + wanted + " in the reactor", projectsFile);
+        }
+
+        List<MavenProject> inBuildOrder = new ArrayList<MavenProject>();
+        for (MavenProject project : session.getProjects()) {
+            if (selected.contains(project)) {
+                inBuildOrder.add(project);
+            }
+        }
+        return inBuildOrder;
+    }
+
+    private static File canonical(File file) throws MavenExecutionException {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            throw new MavenExecutionException("Could not resolve the module directory " + file, e);
+        }
+    }
+}
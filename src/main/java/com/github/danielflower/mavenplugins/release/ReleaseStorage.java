@@ -0,0 +1,16 @@
+package com.github.danielflower.mavenplugins.release;
+
+/**
+ * Where releases are recorded: as an annotated tag per module, in the {@link ReleaseLedger}, or both.
+ */
+public enum ReleaseStorage {
+    Tags, Ledger, TagsAndLedger;
+
+    public boolean usesTags() {
+        return this != Ledger;
+    }
+
+    public boolean usesLedger() {
+        return this != Tags;
+    }
+}
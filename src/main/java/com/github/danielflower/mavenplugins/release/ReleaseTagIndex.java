@@ -0,0 +1,138 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index over a set of tag refs, built once so that each module in the reactor can look up its previous
+ * releases without listing and parsing every tag again.
+ * <p>
+ * Release tags are named {@code artifactId-businessVersion<delimiter>buildNumber}, so the index groups tags by
+ * their name with the trailing build number removed. Peeled commit ids are only resolved for the groups that are
+ * actually asked for, and are then remembered.
+ * </p>
+ */
+public final class ReleaseTagIndex {
+
+    private final Repository repository;
+    private final Map<String, Ref> tagsByName = new LinkedHashMap<>();
+    private final Map<String, List<IndexedTag>> tagsByVersion = new HashMap<>();
+    private final Map<String, List<RefWithCommitId>> peeledTagsByVersion = new HashMap<>();
+
+    private ReleaseTagIndex(Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Indexes the given tag refs.
+     * @param repository The repository used to peel tags to their commits. Only needed when {@link #tagsFor(String, String)} is called.
+     * @param refs The tags to index, with names starting with {@code refs/tags/}
+     */
+    public static ReleaseTagIndex of(Repository repository, Collection<Ref> refs) {
+        ReleaseTagIndex index = new ReleaseTagIndex(repository);
+        for (Ref ref : refs) {
+            index.add(ref);
+        }
+        return index;
+    }
+
+    private void add(Ref ref) {
+        if (!ref.getName().startsWith(AnnotatedTag.TAG_PREFIX)) {
+            return;
+        }
+        String tagName = AnnotatedTag.stripRefPrefix(ref.getName());
+        tagsByName.put(tagName, ref);
+
+        int buildNumberStart = tagName.length();
+        while (buildNumberStart > 0 && isAsciiDigit(tagName.charAt(buildNumberStart - 1))) {
+            buildNumberStart--;
+        }
+        if (buildNumberStart == 0 || buildNumberStart == tagName.length()) {
+            return;
+        }
+        long buildNumber;
+        try {
+            buildNumber = Long.parseLong(tagName.substring(buildNumberStart));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        String key = tagName.substring(0, buildNumberStart);
+        tagsByVersion.computeIfAbsent(key, k -> new ArrayList<>()).add(new IndexedTag(ref, buildNumber));
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    public boolean hasTag(String tagName) {
+        return tagsByName.containsKey(tagName);
+    }
+
+    public Collection<Ref> refs() {
+        return Collections.unmodifiableCollection(tagsByName.values());
+    }
+
+    /**
+     * @param tagWithoutBuildNumber The tag name without the delimiter and build number, e.g. {@code my-artifact-1.2}
+     * @param delimiter The delimiter between the business version and the build number
+     * @return The build numbers of all the tags for that version, in no particular order
+     */
+    public Collection<Long> buildNumbersFor(String tagWithoutBuildNumber, String delimiter) {
+        List<Long> buildNumbers = new ArrayList<>();
+        for (IndexedTag tag : indexedTagsFor(tagWithoutBuildNumber, delimiter)) {
+            buildNumbers.add(tag.buildNumber);
+        }
+        return buildNumbers;
+    }
+
+    /**
+     * @param tagWithoutBuildNumber The tag name without the delimiter and build number, e.g. {@code my-artifact-1.2}
+     * @param delimiter The delimiter between the business version and the build number
+     * @return All the tags for that version along with the commits they point to
+     */
+    public synchronized List<RefWithCommitId> tagsFor(String tagWithoutBuildNumber, String delimiter) throws IOException {
+        String key = tagWithoutBuildNumber + delimiter;
+        List<RefWithCommitId> peeled = peeledTagsByVersion.get(key);
+        if (peeled == null) {
+            peeled = new ArrayList<>();
+            for (IndexedTag tag : indexedTagsFor(tagWithoutBuildNumber, delimiter)) {
+                peeled.add(new RefWithCommitId(tag.ref, peel(tag.ref)));
+            }
+            peeledTagsByVersion.put(key, peeled);
+        }
+        return peeled;
+    }
+
+    private List<IndexedTag> indexedTagsFor(String tagWithoutBuildNumber, String delimiter) {
+        List<IndexedTag> tags = tagsByVersion.get(tagWithoutBuildNumber + delimiter);
+        return tags == null ? Collections.<IndexedTag>emptyList() : tags;
+    }
+
+    private ObjectId peel(Ref ref) throws IOException {
+        if (ref.isPeeled()) {
+            return ref.getPeeledObjectId() != null ? ref.getPeeledObjectId() : ref.getObjectId();
+        }
+        Ref peeledRef = repository.getRefDatabase().peel(ref);
+        return peeledRef.getPeeledObjectId() != null ? peeledRef.getPeeledObjectId() : ref.getObjectId();
+    }
+
+    private static final class IndexedTag {
+        private final Ref ref;
+        private final long buildNumber;
+
+        private IndexedTag(Ref ref, long buildNumber) {
+            this.ref = ref;
+            this.buildNumber = buildNumber;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.danielflower.mavenplugins.release;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The versions of the modules being released, and the POM files of the reactor they are released from, as
+ * written to the file named by {@value ReleaseVersionsModelProcessor#VERSIONS_FILE_PROPERTY}.
+ * <p>
+ * Versions are stored by <code>groupId:artifactId</code>, and each POM path under a key starting with
+ * {@value #POM_KEY_PREFIX}, which can not be mistaken for a module as it has no colon.
+ * </p>
+ */
+final class ReleaseVersions {
+
+    static final String POM_KEY_PREFIX = "pom.";
+
+    static final ReleaseVersions NONE = new ReleaseVersions(Collections.<String, String>emptyMap(), Collections.<File>emptySet());
+
+    private final Map<String, String> versions;
+    private final Set<File> pomFiles;
+
+    ReleaseVersions(Map<String, String> versions, Set<File> pomFiles) {
+        this.versions = versions;
+        this.pomFiles = pomFiles;
+    }
+
+    /**
+     * Writes the new version of each module, and the path of its POM, to a file that can be named by
+     * {@value ReleaseVersionsModelProcessor#VERSIONS_FILE_PROPERTY}.
+     */
+    static void write(File file, Iterable<ReleasableModule> modules) throws IOException {
+        Properties properties = new Properties();
+        int pomCount = 0;
+        for (ReleasableModule module : modules) {
+            properties.setProperty(key(module.getGroupId(), module.getArtifactId()), module.getNewVersion());
+            File pomFile = module.getProject() == null ? null : module.getProject().getFile();
+            if (pomFile != null) {
+                properties.setProperty(POM_KEY_PREFIX + pomCount++, canonical(pomFile).getPath());
+            }
+        }
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            properties.store(out, "Release versions by groupId:artifactId, and the POM files of the reactor");
+        }
+    }
+
+    /**
+     * @param fileName A file written by {@link #write(File, Iterable)}, or null or empty if nothing is being
+     *                 released
+     */
+    static ReleaseVersions read(String fileName) throws IOException {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            return NONE;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(new File(fileName).toPath())) {
+            properties.load(in);
+        }
+        Map<String, String> versions = new HashMap<String, String>();
+        Set<File> pomFiles = new HashSet<File>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(POM_KEY_PREFIX)) {
+                pomFiles.add(canonical(new File(properties.getProperty(name))));
+            } else {
+                versions.put(name, properties.getProperty(name));
+            }
+        }
+        return new ReleaseVersions(versions, pomFiles);
+    }
+
+    boolean isEmpty() {
+        return versions.isEmpty();
+    }
+
+    /**
+     * @return The release version of the module, or null if it is not in the reactor
+     */
+    String versionOf(String groupId, String artifactId) {
+        return versions.get(key(groupId, artifactId));
+    }
+
+    /**
+     * @return True if the file is the POM of one of the reactor's modules, rather than, for example, a POM from a
+     * repository
+     */
+    boolean isReactorPom(File pomFile) {
+        return pomFile != null && pomFiles.contains(canonical(pomFile));
+    }
+
+    private static String key(String groupId, String artifactId) {
+        return groupId + ":" + artifactId;
+    }
+
+    private static File canonical(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.building.Source;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.building.ModelProcessor;
+import org.eclipse.sisu.Typed;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+/**
+ * Gives a Maven build the release versions without the POMs being changed on disk.
+ * <p>
+ * {@link ReleaseInvoker} loads this plugin into the release build as a core extension. In that build, each POM is
+ * read as usual and then, if it is one of the reactor's POMs, the versions of the project, its parent and its
+ * dependencies on released modules are set from the file named by the {@value #VERSIONS_FILE_PROPERTY} system
+ * property. If the property is not set, POMs are read unchanged.
+ * </p>
+ */
+@Named("default")
+@Singleton
+@Typed(ModelProcessor.class)
+public class ReleaseVersionsModelProcessor implements ModelProcessor {
+
+    public static final String VERSIONS_FILE_PROPERTY = "multiModuleRelease.versionsFile";
+
+    private final ModelProcessor delegate;
+    private final ReleaseVersions versions;
+
+    @Inject
+    public ReleaseVersionsModelProcessor(@Named("core-default") ModelProcessor delegate) {
+        this(delegate, readVersions(System.getProperty(VERSIONS_FILE_PROPERTY)));
+    }
+
+    ReleaseVersionsModelProcessor(ModelProcessor delegate, ReleaseVersions versions) {
+        this.delegate = delegate;
+        this.versions = versions;
+    }
+
+    private static ReleaseVersions readVersions(String fileName) {
+        try {
+            return ReleaseVersions.read(fileName);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the release versions from " + fileName, e);
+        }
+    }
+
+    @Override
+    public File locatePom(File projectDirectory) {
+        return delegate.locatePom(projectDirectory);
+    }
+
+    @Override
+    public Model read(File input, Map<String, ?> options) throws IOException {
+        return withReleaseVersions(delegate.read(input, options), input);
+    }
+
+    @Override
+    public Model read(Reader input, Map<String, ?> options) throws IOException {
+        return withReleaseVersions(delegate.read(input, options), sourceFile(options));
+    }
+
+    @Override
+    public Model read(InputStream input, Map<String, ?> options) throws IOException {
+        return withReleaseVersions(delegate.read(input, options), sourceFile(options));
+    }
+
+    private static File sourceFile(Map<String, ?> options) {
+        Object source = options == null ? null : options.get(ModelProcessor.SOURCE);
+        if (source instanceof Source && ((Source) source).getLocation() != null) {
+            return new File(((Source) source).getLocation());
+        }
+        return null;
+    }
+
+    /**
+     * Only the reactor's own POMs are changed. Other POMs, such as those of the modules' dependencies and
+     * parents read from a repository, are left as they are even if they have the same coordinates.
+     */
+    private Model withReleaseVersions(Model model, File pomFile) {
+        if (versions.isEmpty() || model == null || !versions.isReactorPom(pomFile)) {
+            return model;
+        }
+        Parent parent = model.getParent();
+        String groupId = model.getGroupId() == null && parent != null ? parent.getGroupId() : model.getGroupId();
+
+        // as when the POMs are rewritten, a version that is inherited from the parent stays inherited
+        String version = versions.versionOf(groupId, model.getArtifactId());
+        if (version != null && model.getVersion() != null) {
+            model.setVersion(version);
+        }
+        if (parent != null) {
+            String parentVersion = versions.versionOf(parent.getGroupId(), parent.getArtifactId());
+            if (parentVersion != null) {
+                parent.setVersion(parentVersion);
+            }
+        }
+        for (Dependency dependency : model.getDependencies()) {
+            String dependencyVersion = versions.versionOf(dependency.getGroupId(), dependency.getArtifactId());
+            if (dependencyVersion != null && dependency.getVersion() != null) {
+                dependency.setVersion(dependencyVersion);
+            }
+        }
+        return model;
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.PushCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the release tags locally and pushes them to the remote.
+ * <p>
+ * All the tags are pushed at once as an atomic push, so a failure leaves the remote with none of them. An atomic
+ * push that fails because of a transport problem is retried with an increasing delay. Only if the remote does
+ * not support atomic pushes are the tags pushed in chunks of {@value #CHUNK_SIZE} instead, each of which is
+ * retried in the same way. Tags that the remote rejects are not retried, and the status of every tag is reported
+ * in a {@link TagPushException}.
+ * </p>
+ */
+class RemoteTagPusher implements TagPusher {
+
+    static final int CHUNK_SIZE = 100;
+    static final int ATTEMPTS = 3;
+
+    /**
+     * Pushes refs to the remote. Separate from the pusher so that tests can make pushes fail.
+     */
+    interface Push {
+        Iterable<PushResult> push(List<Ref> refs, boolean atomic) throws GitAPIException;
+    }
+
+    private final Git git;
+    private final Push push;
+    private final long initialBackoffMillis;
+
+    public RemoteTagPusher(Git git, String remoteUrl, CredentialsProvider credentialsProvider) {
+        this(git, pushCommand(git, remoteUrl, credentialsProvider), 1000);
+    }
+
+    RemoteTagPusher(Git git, Push push, long initialBackoffMillis) {
+        this.git = git;
+        this.push = push;
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    static Push pushCommand(Git git, String remoteUrl, CredentialsProvider credentialsProvider) {
+        return (refs, atomic) -> {
+            PushCommand pushCommand = git.push()
+                .setCredentialsProvider(credentialsProvider)
+                .setAtomic(atomic);
+            if (remoteUrl != null) {
+                pushCommand.setRemote(remoteUrl);
+            }
+            for (Ref ref : refs) {
+                pushCommand.add(ref);
+            }
+            return pushCommand.call();
+        };
+    }
+
+    @Override
+    public void pushTags(Collection<AnnotatedTag> tags) throws GitAPIException {
+        List<Ref> refs = AnnotatedTag.saveAtHEAD(git, tags);
+        Map<String, RemoteRefUpdate.Status> statuses = new LinkedHashMap<String, RemoteRefUpdate.Status>();
+        for (Ref ref : refs) {
+            statuses.put(ref.getName(), RemoteRefUpdate.Status.NOT_ATTEMPTED);
+        }
+
+        try {
+            pushWithRetries(refs, true, statuses);
+        } catch (TransportException e) {
+            if (!isAtomicPushNotSupported(e)) {
+                throw new TagPushException("Could not push the release tags: " + e.getMessage(), statuses, e);
+            }
+            for (int from = 0; from < refs.size(); from += CHUNK_SIZE) {
+                try {
+                    pushWithRetries(refs.subList(from, Math.min(from + CHUNK_SIZE, refs.size())), false, statuses);
+                } catch (TransportException chunkFailure) {
+                    throw new TagPushException("Could not push the release tags: " + chunkFailure.getMessage(), statuses, chunkFailure);
+                }
+            }
+        }
+
+        for (RemoteRefUpdate.Status status : statuses.values()) {
+            if (!isPushed(status)) {
+                throw new TagPushException("The remote did not accept all of the release tags", statuses, null);
+            }
+        }
+    }
+
+    private void pushWithRetries(List<Ref> refs, boolean atomic, Map<String, RemoteRefUpdate.Status> statuses) throws GitAPIException {
+        long backoff = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                record(push.push(refs, atomic), statuses);
+                return;
+            } catch (TransportException e) {
+                if (attempt >= ATTEMPTS || (atomic && isAtomicPushNotSupported(e))) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoff *= 2;
+            }
+        }
+    }
+
+    private static void record(Iterable<PushResult> results, Map<String, RemoteRefUpdate.Status> statuses) {
+        for (PushResult result : results) {
+            for (RemoteRefUpdate update : result.getRemoteUpdates()) {
+                if (statuses.containsKey(update.getRemoteName())) {
+                    statuses.put(update.getRemoteName(), update.getStatus());
+                }
+            }
+        }
+    }
+
+    /**
+     * JGit checks that the remote offers the atomic capability before sending anything, and fails with this
+     * message if it does not. The capabilities themselves are not public.
+     */
+    static boolean isAtomicPushNotSupported(TransportException e) {
+        return e.getMessage() != null && e.getMessage().contains(JGitText.get().atomicPushNotSupported);
+    }
+
+    static boolean isPushed(RemoteRefUpdate.Status status) {
+        return status == RemoteRefUpdate.Status.OK || status == RemoteRefUpdate.Status.UP_TO_DATE;
+    }
+
+}
@@ -2,7 +2,42 @@ package com.github.danielflower.mavenplugins.release;
 
 import org.apache.maven.plugin.logging.Log;
 
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 public interface Resolver {
 
+    /**
+     * Returned by {@link #locate(ArtifactCoordinates, Log)} for an artifact that was found, but not in a remote
+     * repository.
+     */
+    String LOCAL_REPOSITORY = "";
+
     boolean isResolvable(String groupId, String artifactId, String version, String type, Log log);
+
+    /**
+     * Finds out where an artifact is. Implementations that can tell remote repositories from the local one
+     * override this, so that an artifact that was installed but never deployed is not taken to be published.
+     * @return The URL of the remote repository the artifact was found in, {@link #LOCAL_REPOSITORY} if it was
+     * found but not in a remote repository, or null if it was not found
+     */
+    default String locate(ArtifactCoordinates artifact, Log log) {
+        return isResolvable(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getType(), log)
+            ? LOCAL_REPOSITORY : null;
+    }
+
+    /**
+     * Checks many artifacts at once. Implementations may override this to check them concurrently.
+     * @return The artifacts that are resolvable
+     */
+    default Set<ArtifactCoordinates> resolvable(Collection<ArtifactCoordinates> artifacts, Log log) {
+        Set<ArtifactCoordinates> resolvable = new LinkedHashSet<>();
+        for (ArtifactCoordinates artifact : artifacts) {
+            if (isResolvable(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getType(), log)) {
+                resolvable.add(artifact);
+            }
+        }
+        return resolvable;
+    }
 }
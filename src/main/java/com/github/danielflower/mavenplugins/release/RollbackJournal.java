@@ -0,0 +1,202 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the original contents of every file a release changes, so the changes can be undone without asking Git.
+ * <p>
+ * The journal is a directory holding a copy of each file as it was before it was first changed, and an
+ * {@code index} file with a line per copy in the form {@code number present|absent path}. Copies and index lines
+ * are synced to disk before the file is changed, so if a release dies half way through then the next run can
+ * still put the files back.
+ * </p>
+ */
+public class RollbackJournal {
+
+    private static final String INDEX = "index";
+    private static final String PRESENT = "present";
+    private static final String ABSENT = "absent";
+
+    private final File dir;
+    private Map<File, Entry> entries;
+    private int nextNumber;
+
+    public RollbackJournal(File dir) {
+        Guard.notNull("dir", dir);
+        this.dir = dir;
+    }
+
+    /**
+     * Creates a journal in the {@code multi-module-release} directory of the repository's git directory.
+     */
+    public static RollbackJournal inGitDirectory(Repository repo) {
+        return new RollbackJournal(new File(new File(repo.getDirectory(), "multi-module-release"), "rollback"));
+    }
+
+    public File directory() {
+        return dir;
+    }
+
+    /**
+     * @return True if there are changes that have not been rolled back, for example because an earlier release
+     * was killed before it finished.
+     */
+    public synchronized boolean hasChanges() throws IOException {
+        return !entries().isEmpty();
+    }
+
+    /**
+     * Keeps the current contents of the file, or the fact that it does not exist, unless the file has already
+     * been recorded. Call this before changing the file.
+     */
+    public synchronized void keep(File file) throws IOException {
+        File canonical = file.getCanonicalFile();
+        if (entries().containsKey(canonical)) {
+            return;
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir.getCanonicalPath());
+        }
+        Entry entry = new Entry(nextNumber++, canonical.isFile(), canonical);
+        if (entry.present) {
+            Files.write(entry.copy().toPath(), Files.readAllBytes(canonical.toPath()),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+        }
+        Files.write(new File(dir, INDEX).toPath(), (entry.line() + "\n").getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        entries.put(canonical, entry);
+    }
+
+    /**
+     * @return A set that keeps each file added to it, for code that adds files to a set just before writing them.
+     * If a file cannot be kept then an {@link UncheckedIOException} is thrown from {@code add}.
+     */
+    public Set<File> keepingSet() {
+        return new HashSet<File>() {
+            @Override
+            public boolean add(File file) {
+                try {
+                    keep(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not keep the contents of " + file, e);
+                }
+                return super.add(file);
+            }
+        };
+    }
+
+    /**
+     * @return The files that have been changed, in the order they were first changed
+     */
+    public synchronized List<File> files() throws IOException {
+        return new ArrayList<File>(entries().keySet());
+    }
+
+    /**
+     * Puts every recorded file back the way it was, newest first, and then deletes the journal. If any file
+     * cannot be put back, the journal is left so that it can be tried again.
+     *
+     * @return True if every file was put back
+     */
+    public synchronized boolean revert(Log log) throws IOException {
+        List<Entry> newestFirst = new ArrayList<Entry>(entries().values());
+        boolean hasErrors = false;
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            Entry entry = newestFirst.get(i);
+            try {
+                if (entry.present) {
+                    Files.write(entry.file.toPath(), Files.readAllBytes(entry.copy().toPath()));
+                } else {
+                    Files.deleteIfExists(entry.file.toPath());
+                }
+            } catch (IOException e) {
+                hasErrors = true;
+                log.error("Unable to revert changes to " + entry.file + " - you may need to manually revert this file. Error was: " + e.getMessage());
+            }
+        }
+        if (!hasErrors) {
+            discard();
+        }
+        return !hasErrors;
+    }
+
+    /**
+     * Forgets the recorded files without putting them back.
+     */
+    public synchronized void discard() throws IOException {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(dir.toPath());
+        entries = new LinkedHashMap<File, Entry>();
+        nextNumber = 0;
+    }
+
+    private Map<File, Entry> entries() throws IOException {
+        if (entries == null) {
+            entries = new LinkedHashMap<File, Entry>();
+            File index = new File(dir, INDEX);
+            if (index.isFile()) {
+                for (String line : Files.readAllLines(index.toPath(), StandardCharsets.UTF_8)) {
+                    nextNumber++;
+                    Entry entry = parse(line);
+                    if (entry != null) {
+                        entries.putIfAbsent(entry.file, entry);
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    private Entry parse(String line) {
+        // a line cut short by a crash is ignored: its file had not been changed yet
+        String[] parts = line.split(" ", 3);
+        if (parts.length != 3 || !(PRESENT.equals(parts[1]) || ABSENT.equals(parts[1]))) {
+            return null;
+        }
+        try {
+            Entry entry = new Entry(Integer.parseInt(parts[0]), PRESENT.equals(parts[1]), new File(parts[2]));
+            return !entry.present || entry.copy().isFile() ? entry : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private final class Entry {
+        final int number;
+        final boolean present;
+        final File file;
+
+        Entry(int number, boolean present, File file) {
+            this.number = number;
+            this.present = present;
+            this.file = file;
+        }
+
+        File copy() {
+            return new File(dir, number + ".orig");
+        }
+
+        String line() {
+            return number + " " + (present ? PRESENT : ABSENT) + " " + file.getPath();
+        }
+    }
+}
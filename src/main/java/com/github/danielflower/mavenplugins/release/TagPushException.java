@@ -0,0 +1,50 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thrown when some release tags could not be pushed, with the status of each tag so that it is clear which ones
+ * the remote has.
+ */
+public class TagPushException extends GitAPIException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final LinkedHashMap<String, RemoteRefUpdate.Status> statuses;
+
+    public TagPushException(String message, Map<String, RemoteRefUpdate.Status> statusesByRefName, Throwable cause) {
+        super(message, cause);
+        LinkedHashMap<String, RemoteRefUpdate.Status> byTagName = new LinkedHashMap<String, RemoteRefUpdate.Status>();
+        for (Map.Entry<String, RemoteRefUpdate.Status> entry : statusesByRefName.entrySet()) {
+            String refName = entry.getKey();
+            String name = refName.startsWith(AnnotatedTag.TAG_PREFIX) ? AnnotatedTag.stripRefPrefix(refName) : refName;
+            byTagName.put(name, entry.getValue());
+        }
+        this.statuses = byTagName;
+    }
+
+    /**
+     * @return The push status of each tag, by tag name
+     */
+    public Map<String, RemoteRefUpdate.Status> getStatuses() {
+        return Collections.unmodifiableMap(statuses);
+    }
+
+    /**
+     * @return A line for each tag saying whether it was pushed
+     */
+    public List<String> statusLines() {
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<String, RemoteRefUpdate.Status> entry : statuses.entrySet()) {
+            lines.add(" * " + entry.getKey() + ": " + entry.getValue());
+        }
+        return lines;
+    }
+}
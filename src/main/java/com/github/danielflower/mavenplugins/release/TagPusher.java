@@ -0,0 +1,11 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+import java.util.Collection;
+
+interface TagPusher {
+
+    void pushTags(Collection<AnnotatedTag> tags) throws GitAPIException;
+
+}
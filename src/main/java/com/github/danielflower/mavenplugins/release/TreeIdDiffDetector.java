@@ -0,0 +1,150 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Detects changes by comparing the tree of the module at HEAD with its tree at each tag, rather than walking the
+ * commits in between. Git trees are content-addressed, so an unchanged module has the same tree id no matter how
+ * long the history since the tag is.
+ * <p>
+ * When the module has child modules and its tree id differs, the two trees are diffed with the child module
+ * directories excluded, which only descends into sub-trees whose ids differ. If a child module directory does not
+ * exist at one of the two commits (for example because it was moved) the exclusions cannot be applied reliably, so
+ * the answer is left to the {@link TreeWalkingDiffDetector}.
+ * </p>
+ * <p>
+ * Unlike walking the history, a change that has since been reverted is not treated as a change.
+ * </p>
+ */
+public class TreeIdDiffDetector implements DiffDetector {
+
+    private final Repository repo;
+    private final DiffDetector fallback;
+
+    public TreeIdDiffDetector(Repository repo) {
+        this(repo, new TreeWalkingDiffDetector(repo));
+    }
+
+    TreeIdDiffDetector(Repository repo, DiffDetector fallback) {
+        this.repo = repo;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public boolean hasChangedSince(String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) throws IOException {
+        try (RevWalk walk = new RevWalk(repo)) {
+            RevTree headTree = headTree(walk);
+            Boolean changed = compareTrees(walk, headTree, modulePath, childModules, tags);
+            return changed != null ? changed : fallback.hasChangedSince(modulePath, childModules, tags);
+        }
+    }
+
+    /**
+     * Compares the trees of each module, and hands all the modules whose trees cannot answer the question to the
+     * fallback detector together, so that it can answer for them in one go.
+     */
+    @Override
+    public Set<String> changedModules(Collection<ModuleSinceTags> modules) throws IOException {
+        Set<String> changed = new HashSet<>();
+        List<ModuleSinceTags> undecided = new ArrayList<>();
+        try (RevWalk walk = new RevWalk(repo)) {
+            RevTree headTree = headTree(walk);
+            for (ModuleSinceTags module : modules) {
+                Boolean moduleChanged = compareTrees(walk, headTree, module.getModulePath(), module.getChildModules(), module.getTags());
+                if (moduleChanged == null) {
+                    undecided.add(module);
+                } else if (moduleChanged) {
+                    changed.add(module.getModulePath());
+                }
+            }
+        }
+        if (!undecided.isEmpty()) {
+            changed.addAll(fallback.changedModules(undecided));
+        }
+        return changed;
+    }
+
+    private RevTree headTree(RevWalk walk) throws IOException {
+        return walk.parseCommit(repo.getRefDatabase().findRef("HEAD").getObjectId()).getTree();
+    }
+
+    /**
+     * @return Whether the module has changed, or null if comparing trees cannot tell
+     */
+    private static Boolean compareTrees(RevWalk walk, RevTree headTree, String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) throws IOException {
+        ObjectReader reader = walk.getObjectReader();
+        ObjectId headModuleTree = treeAt(reader, headTree, modulePath);
+        if (headModuleTree == null) {
+            return null;
+        }
+        for (AnnotatedTag tag : tags) {
+            RevTree tagTree = walk.parseCommit(tag.ref().getTarget().getObjectId()).getTree();
+            ObjectId tagModuleTree = treeAt(reader, tagTree, modulePath);
+            if (headModuleTree.equals(tagModuleTree)) {
+                return false;
+            }
+            if (tagModuleTree != null && !childModules.isEmpty()) {
+                if (!childModulesExistIn(reader, headTree, modulePath, childModules)
+                    || !childModulesExistIn(reader, tagTree, modulePath, childModules)) {
+                    return null;
+                }
+                if (!hasChangesOutsideChildModules(reader, headTree, tagTree, modulePath, childModules)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasChangesOutsideChildModules(ObjectReader reader, RevTree headTree, RevTree tagTree, String modulePath, List<String> childModules) throws IOException {
+        try (TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.setRecursive(true);
+            treeWalk.addTree(headTree);
+            treeWalk.addTree(tagTree);
+            treeWalk.setFilter(TreeWalkingDiffDetector.changesInModule(modulePath, childModules));
+            return treeWalk.next();
+        }
+    }
+
+    private static boolean childModulesExistIn(ObjectReader reader, RevTree tree, String modulePath, List<String> childModules) throws IOException {
+        boolean isRootModule = ".".equals(modulePath);
+        for (String childModule : childModules) {
+            String path = isRootModule ? childModule : modulePath + "/" + childModule;
+            if (treeAt(reader, tree, path) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The id of the tree at the given path, or null if there is no directory at that path
+     */
+    private static ObjectId treeAt(ObjectReader reader, RevTree tree, String path) throws IOException {
+        if (".".equals(path)) {
+            return tree.getId();
+        }
+        try (TreeWalk treeWalk = TreeWalk.forPath(reader, path, tree)) {
+            if (treeWalk == null || treeWalk.getFileMode(0) != FileMode.TREE) {
+                return null;
+            }
+            return treeWalk.getObjectId(0);
+        } catch (IllegalArgumentException e) {
+            // paths such as "../sibling" cannot be looked up in a tree
+            return null;
+        }
+    }
+}
@@ -3,7 +3,10 @@ package com.github.danielflower.mavenplugins.release;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
 import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
@@ -11,10 +14,22 @@ import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class TreeWalkingDiffDetector implements DiffDetector {
 
+    /**
+     * Each release being compared against needs its own {@link RevFlag}, and a {@link RevWalk} only has a couple of
+     * dozen flags available.
+     */
+    static final int RELEASES_PER_WALK = 20;
+
     private final Repository repo;
 
     public TreeWalkingDiffDetector(Repository repo) {
@@ -26,7 +41,7 @@ public class TreeWalkingDiffDetector implements DiffDetector {
         try {
             walk.setRetainBody(false);
             walk.markStart(walk.parseCommit(repo.getRefDatabase().findRef("HEAD").getObjectId()));
-            filterOutOtherModulesChanges(modulePath, childModules, walk);
+            walk.setTreeFilter(changesInModule(modulePath, childModules));
             stopWalkingWhenTheTagsAreHit(tags, walk);
             return walk.iterator().hasNext();
         } finally {
@@ -34,6 +49,172 @@ public class TreeWalkingDiffDetector implements DiffDetector {
         }
     }
 
+    /**
+     * <p>
+     * Answers for all the modules with one walk of the history from HEAD, rather than one walk per module. Modules
+     * whose tags point at the same commits share a release; each release gets a flag that is carried from its tagged
+     * commits to all their ancestors, so a commit that is reachable from HEAD but does not have a module's flag is
+     * one that {@link #hasChangedSince(String, List, Collection)} would have visited for that module. The paths
+     * such a commit changes are attributed to the modules that own them using a {@link ModulePathTrie}.
+     * </p>
+     * <p>
+     * The walk stops at the common ancestor of HEAD and every release. Merge commits only count for paths that
+     * differ from all of their parents, and the commits on merged branches are always visited, so this can report a
+     * change in the rare case that a merged branch changed a module and then put it back exactly as it was.
+     * </p>
+     */
+    @Override
+    public Set<String> changedModules(Collection<ModuleSinceTags> modules) throws IOException {
+        Set<String> changed = new HashSet<>();
+        Map<Set<ObjectId>, List<ModuleSinceTags>> modulesByRelease = new LinkedHashMap<>();
+        try (RevWalk walk = new RevWalk(repo)) {
+            for (ModuleSinceTags module : modules) {
+                if (!ModulePathTrie.canBePlaced(module.getModulePath())) {
+                    if (hasChangedSince(module.getModulePath(), module.getChildModules(), module.getTags())) {
+                        changed.add(module.getModulePath());
+                    }
+                    continue;
+                }
+                Set<ObjectId> releaseCommits = new HashSet<>();
+                for (AnnotatedTag tag : module.getTags()) {
+                    releaseCommits.add(walk.parseCommit(tag.ref().getTarget().getObjectId()).copy());
+                }
+                modulesByRelease.computeIfAbsent(releaseCommits, k -> new ArrayList<>()).add(module);
+            }
+        }
+
+        List<Map.Entry<Set<ObjectId>, List<ModuleSinceTags>>> releases = new ArrayList<>(modulesByRelease.entrySet());
+        for (int i = 0; i < releases.size(); i += RELEASES_PER_WALK) {
+            changed.addAll(changedModulesInOneWalk(releases.subList(i, Math.min(releases.size(), i + RELEASES_PER_WALK))));
+        }
+        return changed;
+    }
+
+    private Set<String> changedModulesInOneWalk(List<Map.Entry<Set<ObjectId>, List<ModuleSinceTags>>> releases) throws IOException {
+        Set<String> changed = new HashSet<>();
+        Set<String> allModulePaths = new HashSet<>();
+        List<ModuleSinceTags> allModules = new ArrayList<>();
+        for (Map.Entry<Set<ObjectId>, List<ModuleSinceTags>> release : releases) {
+            for (ModuleSinceTags module : release.getValue()) {
+                allModules.add(module);
+                allModulePaths.add(module.getModulePath());
+            }
+        }
+        ModulePathTrie trie = new ModulePathTrie(allModules);
+        ObjectId head = repo.getRefDatabase().findRef("HEAD").getObjectId();
+        List<Set<ObjectId>> releaseCommits = new ArrayList<>();
+        for (Map.Entry<Set<ObjectId>, List<ModuleSinceTags>> release : releases) {
+            releaseCommits.add(release.getKey());
+        }
+        List<ObjectId> commonAncestors = commonAncestors(head, releaseCommits);
+
+        RevWalk walk = new RevWalk(repo);
+        try {
+            walk.setRetainBody(false);
+            // topological order means every child has been seen, and so has carried its flags, before its parents
+            walk.sort(RevSort.TOPO);
+
+            RevFlag reachableFromHead = walk.newFlag("HEAD");
+            walk.carry(reachableFromHead);
+            RevCommit headCommit = walk.parseCommit(head);
+            headCommit.add(reachableFromHead);
+            walk.markStart(headCommit);
+
+            Map<RevFlag, List<ModuleSinceTags>> modulesByReleaseFlag = new LinkedHashMap<>();
+            for (Map.Entry<Set<ObjectId>, List<ModuleSinceTags>> release : releases) {
+                RevFlag released = walk.newFlag("release-" + modulesByReleaseFlag.size());
+                walk.carry(released);
+                for (ObjectId releaseCommitId : release.getKey()) {
+                    RevCommit releaseCommit = walk.parseCommit(releaseCommitId);
+                    releaseCommit.add(released);
+                    walk.markStart(releaseCommit);
+                }
+                modulesByReleaseFlag.put(released, release.getValue());
+            }
+            for (ObjectId commonAncestor : commonAncestors) {
+                walk.markUninteresting(walk.parseCommit(commonAncestor));
+            }
+
+            for (RevCommit commit : walk) {
+                if (!commit.has(reachableFromHead)) {
+                    continue;
+                }
+                Set<ModuleSinceTags> candidates = new HashSet<>();
+                for (Map.Entry<RevFlag, List<ModuleSinceTags>> release : modulesByReleaseFlag.entrySet()) {
+                    if (!commit.has(release.getKey())) {
+                        for (ModuleSinceTags module : release.getValue()) {
+                            if (!changed.contains(module.getModulePath())) {
+                                candidates.add(module);
+                            }
+                        }
+                    }
+                }
+                if (candidates.isEmpty()) {
+                    continue;
+                }
+                for (RevCommit parent : commit.getParents()) {
+                    walk.parseHeaders(parent);
+                }
+                for (ModuleSinceTags module : trie.modulesChangedBy(walk.getObjectReader(), commit, candidates)) {
+                    changed.add(module.getModulePath());
+                }
+                if (changed.containsAll(allModulePaths)) {
+                    break;
+                }
+            }
+        } finally {
+            walk.dispose();
+        }
+        return changed;
+    }
+
+    /**
+     * Everything reachable from the merge bases of HEAD and all the releases is reachable from every release, so
+     * is of no interest to any module. The merge bases are worked out two commits at a time, as a walk from all
+     * of the commits at once would need a flag for each of them. If a module has never been released then the
+     * whole history is of interest.
+     */
+    List<ObjectId> commonAncestors(ObjectId head, Collection<Set<ObjectId>> releaseCommits) throws IOException {
+        Set<ObjectId> commits = new LinkedHashSet<>();
+        for (Set<ObjectId> release : releaseCommits) {
+            if (release.isEmpty()) {
+                return Collections.emptyList();
+            }
+            commits.addAll(release);
+        }
+        Set<ObjectId> mergeBases = Collections.singleton(head);
+        RevWalk walk = new RevWalk(repo);
+        try {
+            walk.setRetainBody(false);
+            for (ObjectId commit : commits) {
+                Set<ObjectId> withCommit = new LinkedHashSet<>();
+                for (ObjectId mergeBase : mergeBases) {
+                    withCommit.addAll(mergeBases(walk, mergeBase, commit));
+                }
+                if (withCommit.isEmpty()) {
+                    // unrelated histories
+                    return Collections.emptyList();
+                }
+                mergeBases = withCommit;
+            }
+        } finally {
+            walk.dispose();
+        }
+        return new ArrayList<>(mergeBases);
+    }
+
+    private static List<ObjectId> mergeBases(RevWalk walk, ObjectId first, ObjectId second) throws IOException {
+        walk.reset();
+        walk.setRevFilter(RevFilter.MERGE_BASE);
+        walk.markStart(walk.parseCommit(first));
+        walk.markStart(walk.parseCommit(second));
+        List<ObjectId> mergeBases = new ArrayList<>();
+        for (RevCommit mergeBase : walk) {
+            mergeBases.add(mergeBase.copy());
+        }
+        return mergeBases;
+    }
+
     private static void stopWalkingWhenTheTagsAreHit(Collection<AnnotatedTag> tags, RevWalk walk) throws IOException {
         for (AnnotatedTag tag : tags) {
             ObjectId commitId = tag.ref().getTarget().getObjectId();
@@ -42,7 +223,7 @@ public class TreeWalkingDiffDetector implements DiffDetector {
         }
     }
 
-    private void filterOutOtherModulesChanges(String modulePath, List<String> childModules, RevWalk walk) {
+    static TreeFilter changesInModule(String modulePath, List<String> childModules) {
         boolean isRootModule = ".".equals(modulePath);
         boolean isMultiModuleProject = !isRootModule || !childModules.isEmpty();
         List<TreeFilter> treeFilters = new ArrayList<>();
@@ -60,7 +241,6 @@ public class TreeWalkingDiffDetector implements DiffDetector {
             }
 
         }
-        TreeFilter treeFilter = treeFilters.size() == 1 ? treeFilters.get(0) : AndTreeFilter.create(treeFilters);
-        walk.setTreeFilter(treeFilter);
+        return treeFilters.size() == 1 ? treeFilters.get(0) : AndTreeFilter.create(treeFilters);
     }
 }
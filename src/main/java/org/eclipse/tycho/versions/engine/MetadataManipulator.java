@@ -23,5 +23,9 @@ public interface MetadataManipulator {
 
     public void applyChanges(ProjectMetadata project, VersionChangesDescriptor versionChangeContext);
 
+    /**
+     * Writes the changed metadata of the project, adding each file to {@code updatedFiles} just before it is
+     * written, so that the set can be used to keep what the file held.
+     */
     public void writeMetadata(ProjectMetadata project, Set<File> updatedFiles) throws IOException;
 }
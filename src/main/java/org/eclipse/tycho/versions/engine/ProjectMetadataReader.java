@@ -23,6 +23,7 @@ import org.codehaus.plexus.component.annotations.Component;
 import org.codehaus.plexus.component.annotations.Requirement;
 import org.codehaus.plexus.logging.Logger;
 import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.eclipse.tycho.versions.pom.PomDocumentCache;
 import org.eclipse.tycho.versions.pom.PomFile;
 import org.eclipse.tycho.versions.pom.Profile;
 
@@ -35,6 +36,15 @@ public class ProjectMetadataReader {
 
     private Map<File, ProjectMetadata> projects = new LinkedHashMap<>();
 
+    private PomDocumentCache documents = new PomDocumentCache();
+
+    /**
+     * Sets the cache that poms are read through, so that they are read once however many times they are parsed.
+     */
+    public void setDocumentCache(PomDocumentCache documents) {
+        this.documents = documents;
+    }
+
     public void addBasedir(File basedir) throws IOException {
         // Unfold configuration inheritance
 
@@ -70,7 +80,7 @@ public class ProjectMetadataReader {
             log.info("No pom file found at " + basedir);
             return;
         }
-        PomFile pom = PomFile.read(pomFile, PomFile.POM_XML.equals(pomFile.getName()));
+        PomFile pom = documents.readPom(pomFile, PomFile.POM_XML.equals(pomFile.getName()));
         project.putMetadata(pom);
 
         String packaging = pom.getPackaging();
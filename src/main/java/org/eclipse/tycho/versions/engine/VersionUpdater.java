@@ -31,6 +31,7 @@ import org.eclipse.tycho.model.Feature;
 import org.eclipse.tycho.model.IU;
 import org.eclipse.tycho.model.ProductConfiguration;
 import org.eclipse.tycho.versions.bundle.MutableBundleManifest;
+import org.eclipse.tycho.versions.pom.PomDocumentCache;
 import org.eclipse.tycho.versions.pom.PomFile;
 import org.eclipse.tycho.versions.utils.ProductFileFilter;
 
@@ -57,11 +58,28 @@ public abstract class VersionUpdater {
 
 	private Map<MavenProject, ProjectMetadata> pms = new HashMap<>();
 
+    private PomDocumentCache documents = new PomDocumentCache();
+
 	public void setUpdatedFiles(Set<String> updatedFiles) {
 		this.updatedFileNames = updatedFiles;
 		
 	}
 
+    /**
+     * Sets the cache that poms are read through, so that they are read once however many times they are parsed.
+     */
+    public void setDocumentCache(PomDocumentCache documents) {
+        this.documents = documents;
+    }
+
+    /**
+     * Sets the set that metadata files are added to just before they are written, for callers that need to keep
+     * what the files held.
+     */
+    public void setWrittenFiles(Set<File> writtenFiles) {
+        engine.setUpdatedFiles(writtenFiles);
+    }
+
     static {
         VersionAdaptor bundleVersionAdaptor = new VersionAdaptor() {
             @Override
@@ -106,6 +124,13 @@ public abstract class VersionUpdater {
         });
     }
 
+    /**
+     * @return True if projects with the given packaging have Eclipse/OSGi metadata whose version follows the pom
+     */
+    public static boolean hasMetadataFor(String packaging) {
+        return updaters.containsKey(packaging);
+    }
+
     public void setProjects(List<MavenProject> projects) {
         this.projects = projects;
         
@@ -117,7 +142,7 @@ public abstract class VersionUpdater {
             	pms.put(project, pm);
 
 				try {
-					PomFile pom = PomFile.read(project.getFile(), false);
+					PomFile pom = documents.readPom(project.getFile(), false);
 	                pm.putMetadata(pom);
 				} catch (IOException e) {
 					// TODO Auto-generated catch block
@@ -144,7 +169,7 @@ public abstract class VersionUpdater {
             	pms.put(project, pm);
 
             	try {
-					PomFile pom = PomFile.read(project.getFile(), false);
+					PomFile pom = documents.readPom(project.getFile(), false);
 	                pm.putMetadata(pom);
 				} catch (IOException e) {
 					// TODO Auto-generated catch block
@@ -155,7 +180,7 @@ public abstract class VersionUpdater {
                 String osgiVersion = Versions.toCanonicalVersion(adaptor.getVersion(pm, logger));
 
                 if (osgiVersion != null && !Versions.isVersionEquals(pomVersion, osgiVersion)) {
-                	PomFile pom = PomFile.read(project.getFile(), false);
+                	PomFile pom = documents.readPom(project.getFile(), false);
                     addVersionChange(engine, pom, osgiVersion);
                 }
             }
@@ -164,6 +189,7 @@ public abstract class VersionUpdater {
         engine.apply();
         
         for (File file : engine.updatedFiles) {
+        	documents.forget(file);
         	updatedFileNames.add(file.getCanonicalPath());
         }
     }
@@ -95,6 +95,13 @@ public class VersionsEngine {
         this.updateVersionRangeMatchingBounds = updateVersionRangeMatchingBounds;
     }
 
+    /**
+     * Sets the set that written files are added to. Each file is added just before it is written.
+     */
+    public void setUpdatedFiles(Set<File> updatedFiles) {
+        this.updatedFiles = updatedFiles;
+    }
+
     public void setProjects(Collection<ProjectMetadata> projects) {
         this.projects = projects;
     }
@@ -74,8 +74,8 @@ public class BundleManifestManipulator extends AbstractMetadataManipulator {
         MutableBundleManifest mf = project.getMetadata(MutableBundleManifest.class);
         if (mf != null) {
             File manifestFile = getManifestFile(project);
-			MutableBundleManifest.write(mf, manifestFile);
             updatedFiles.add(manifestFile);
+			MutableBundleManifest.write(mf, manifestFile);
         }
     }
 
@@ -47,8 +47,8 @@ public class BundleP2InfManipulator extends AbstractMetadataManipulator {
     	BundleP2Inf p2InfFile = project.getMetadata(BundleP2Inf.class);
         if (p2InfFile != null) {
             Path file = getP2InfFile(project);
-            BundleP2Inf.write(p2InfFile, file);
             updatedFiles.add(file.toFile());
+            BundleP2Inf.write(p2InfFile, file);
         }
     }
 
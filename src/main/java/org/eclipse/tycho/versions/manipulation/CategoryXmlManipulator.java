@@ -117,8 +117,8 @@ public class CategoryXmlManipulator extends AbstractMetadataManipulator {
         Category categoryXml = project.getMetadata(Category.class);
         if (categoryXml != null) {
             File categoryFile = new File(basedir, Category.CATEGORY_XML);
-			Category.write(categoryXml, categoryFile);
 			updatedFiles.add(categoryFile);
+			Category.write(categoryXml, categoryFile);
         }
     }
 
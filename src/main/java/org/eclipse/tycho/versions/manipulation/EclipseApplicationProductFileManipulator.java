@@ -91,8 +91,8 @@ public class EclipseApplicationProductFileManipulator extends ProductFileManipul
         ProductConfiguration product = project.getMetadata(ProductConfiguration.class);
         if (product != null) {
             File productFile = getProductFile(project);
-			ProductConfiguration.write(product, productFile);
 			updatedFiles.add(productFile);
+			ProductConfiguration.write(product, productFile);
         }
     }
 }
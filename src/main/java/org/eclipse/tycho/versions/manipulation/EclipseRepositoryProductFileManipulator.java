@@ -79,8 +79,8 @@ public class EclipseRepositoryProductFileManipulator extends ProductFileManipula
         if (products != null) {
             for (Map.Entry<File, ProductConfiguration> entry : products.getProductConfigurations().entrySet()) {
                 File file = entry.getKey();
-				ProductConfiguration.write(entry.getValue(), file);
 				updatedFiles.add(file);
+				ProductConfiguration.write(entry.getValue(), file);
             }
         }
     }
@@ -186,8 +186,8 @@ public class FeatureXmlManipulator extends AbstractMetadataManipulator {
         Feature feature = project.getMetadata(Feature.class);
         if (feature != null) {
             File featureFile = getFeatureFile(project);
-			Feature.write(feature, featureFile);
 			updatedFiles.add(featureFile);
+			Feature.write(feature, featureFile);
         }
     }
 }
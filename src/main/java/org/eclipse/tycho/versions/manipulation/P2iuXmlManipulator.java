@@ -51,8 +51,8 @@ public class P2iuXmlManipulator extends AbstractMetadataManipulator {
         IU iu = project.getMetadata(IU.class);
         if (iu != null) {
             File iuFile = new File(project.getBasedir(), IU.SOURCE_FILE_NAME);
-			IU.write(iu, iuFile, null);
 			updatedFiles.add(iuFile);
+			IU.write(iu, iuFile, null);
         }
     }
 
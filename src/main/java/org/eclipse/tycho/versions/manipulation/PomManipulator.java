@@ -190,8 +190,8 @@ public class PomManipulator extends AbstractMetadataManipulator {
         PomFile pom = project.getMetadata(PomFile.class);
         File pomFile = new File(project.getBasedir(), "pom.xml");
         if (pom != null && pomFile.exists()) {
-            PomFile.write(pom, pomFile);
             updatedFiles.add(pomFile);
+            PomFile.write(pom, pomFile);
         }
     }
 
@@ -97,8 +97,8 @@ public class SiteXmlManipulator extends AbstractMetadataManipulator {
         UpdateSite site = project.getMetadata(UpdateSite.class);
         if (site != null) {
             File siteFile = new File(basedir, UpdateSite.SITE_XML);
-			UpdateSite.write(site, siteFile);
 			updatedFiles.add(siteFile);
+			UpdateSite.write(site, siteFile);
         }
     }
 
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.tycho.versions.pom;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.pdark.decentxml.XMLParseException;
+
+/**
+ * Holds the contents of pom files for the length of one release, so that each file is read from disk once however
+ * many times it is parsed.
+ * <p>
+ * Entries are keyed by canonical path and are only used while the modification time and size of the file are the
+ * ones seen when it was read. Code that writes a file through the cache updates the entry, and code that writes a
+ * file some other way should {@link #forget(File)} it.
+ * </p>
+ */
+public class PomDocumentCache {
+
+    private final Map<File, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @return The contents of the file, read from disk only if it is not cached or has changed since
+     */
+    public byte[] read(File file) throws IOException {
+        return entry(file).bytes;
+    }
+
+    /**
+     * Parses the file. Read only poms are parsed once and the same instance is returned each time, as nothing
+     * changes them; a mutable pom is parsed afresh for each caller from the cached contents.
+     */
+    public PomFile readPom(File file, boolean isMutable) throws IOException {
+        Entry entry = entry(file);
+        if (isMutable) {
+            return parse(file, entry.bytes, true);
+        }
+        synchronized (entry) {
+            if (entry.readOnlyPom == null) {
+                entry.readOnlyPom = parse(file, entry.bytes, false);
+            }
+            return entry.readOnlyPom;
+        }
+    }
+
+    /**
+     * Writes the contents to the file and caches them, so that the next read does not go to disk.
+     */
+    public void write(File file, byte[] contents) throws IOException {
+        File key = file.getCanonicalFile();
+        Files.write(key.toPath(), contents);
+        entries.put(key, new Entry(key, contents, key.lastModified(), key.length()));
+    }
+
+    /**
+     * Drops the cached contents of a file that has been changed without going through the cache.
+     */
+    public void forget(File file) throws IOException {
+        entries.remove(file.getCanonicalFile());
+    }
+
+    private Entry entry(File file) throws IOException {
+        File key = file.getCanonicalFile();
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.isCurrent()) {
+            // the stamp is taken first so that a change made while reading is seen next time
+            long lastModified = key.lastModified();
+            long length = key.length();
+            entry = new Entry(key, Files.readAllBytes(key.toPath()), lastModified, length);
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private static PomFile parse(File file, byte[] bytes, boolean isMutable) throws IOException {
+        try {
+            return PomFile.read(new ByteArrayInputStream(bytes), isMutable);
+        } catch (XMLParseException xpe) {
+            throw new XMLParseException("This Pom " + file.getAbsolutePath() + " is in the Wrong Format", xpe);
+        }
+    }
+
+    private static final class Entry {
+        private final File file;
+        private final byte[] bytes;
+        private final long lastModified;
+        private final long length;
+        private PomFile readOnlyPom;
+
+        private Entry(File file, byte[] bytes, long lastModified, long length) {
+            this.file = file;
+            this.bytes = bytes;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        private boolean isCurrent() {
+            return file.lastModified() == lastModified && file.length() == length;
+        }
+    }
+}
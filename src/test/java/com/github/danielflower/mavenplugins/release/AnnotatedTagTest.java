@@ -1,13 +1,20 @@
 package com.github.danielflower.mavenplugins.release;
 
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.RefAlreadyExistsException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.junit.Assert;
 import org.junit.Test;
 import scaffolding.TestProject;
 
 import java.io.IOException;
+import java.util.List;
 
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 public class AnnotatedTagTest {
@@ -33,6 +40,70 @@ public class AnnotatedTagTest {
         assertThat(inflatedTag.buildNumber(), equalTo(2134L));
     }
 
+    @Test
+    public void manyTagsCanBeCreatedAtHEADTogether() throws GitAPIException, IOException {
+        TestProject project = TestProject.singleModuleProject();
+        List<AnnotatedTag> tags = asList(
+            AnnotatedTag.create("core-1.0.1", "1.0", 1),
+            AnnotatedTag.create("app-2.0.1", "2.0", 1),
+            AnnotatedTag.create("console-app-3.2.1", "3.2", 1));
+
+        List<Ref> refs = AnnotatedTag.saveAtHEAD(project.local, tags);
+
+        ObjectId head = project.local.getRepository().resolve("HEAD");
+        assertThat(refs.size(), is(3));
+        for (int i = 0; i < tags.size(); i++) {
+            assertThat(refs.get(i).getName(), equalTo("refs/tags/" + tags.get(i).name()));
+            assertThat(tags.get(i).getObjectId(), equalTo(head));
+            AnnotatedTag inflatedTag = AnnotatedTag.fromRef(project.local.getRepository(), refs.get(i));
+            assertThat(inflatedTag.getObjectId(), equalTo(head));
+            assertThat(inflatedTag.version(), equalTo(tags.get(i).version()));
+        }
+    }
+
+    @Test
+    public void noTagsAreCreatedIfOneOfThemAlreadyExists() throws GitAPIException {
+        TestProject project = TestProject.singleModuleProject();
+        AnnotatedTag.create("app-2.0.1", "2.0", 1).saveAtHEAD(project.local);
+
+        try {
+            AnnotatedTag.saveAtHEAD(project.local, asList(
+                AnnotatedTag.create("core-1.0.1", "1.0", 1),
+                AnnotatedTag.create("app-2.0.1", "2.0", 1)));
+            Assert.fail("Should have thrown");
+        } catch (RefAlreadyExistsException e) {
+            assertThat(e.getMessage(), containsString("app-2.0.1"));
+        }
+        assertThat(project.local.tagList().call().size(), is(1));
+    }
+
+    @Test
+    public void messagesThatAreNotReleaseTagsGiveVersion0Dot0() throws GitAPIException, IOException {
+        TestProject project = TestProject.singleModuleProject();
+        project.local.tag().setName("array-1.0.2").setAnnotated(true).setMessage("[1, 2]").call();
+        project.local.tag().setName("nested-1.0.2").setAnnotated(true).setMessage("{\"other\":{\"version\":\"2\",\"buildNumber\":\"3\"}}").call();
+        project.local.tag().setName("unparseable-1.0.2").setAnnotated(true).setMessage("{\"version\":\"1.0\",\"buildNumber\":\"two\"}").call();
+
+        for (Ref ref : project.local.tagList().call()) {
+            AnnotatedTag inflatedTag = AnnotatedTag.fromRef(project.local.getRepository(), ref);
+            assertThat(inflatedTag.version(), equalTo("0"));
+            assertThat(inflatedTag.buildNumber(), equalTo(0L));
+        }
+    }
+
+    @Test
+    public void theMessageIsReadIgnoringOtherFieldsAndNumericBuildNumbers() throws GitAPIException, IOException {
+        TestProject project = TestProject.singleModuleProject();
+        project.local.tag().setName("my-name-1.0.7").setAnnotated(true)
+            .setMessage("{\"author\":{\"name\":\"x\"},\"buildNumber\":7,\"version\":\"1.0\"}").call();
+
+        Ref ref = project.local.tagList().call().get(0);
+        AnnotatedTag inflatedTag = AnnotatedTag.fromRef(project.local.getRepository(), ref);
+        assertThat(inflatedTag.version(), equalTo("1.0"));
+        assertThat(inflatedTag.buildNumber(), equalTo(7L));
+        assertThat(inflatedTag.getObjectId(), equalTo(project.local.getRepository().resolve("HEAD")));
+    }
+
     @Test
     public void ifATagIsSavedWithoutJsonThenTheVersionIsSetTo0Dot0() throws GitAPIException, IOException {
         TestProject project = TestProject.singleModuleProject();
@@ -0,0 +1,103 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.junit.Test;
+import scaffolding.TestProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static com.github.danielflower.mavenplugins.release.AnnotatedTagFinderTest.saveFileInModuleAndTag;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class CachingDiffDetectorTest {
+
+    @Test
+    public void answersFromTheCacheFileWhenNothingHasMoved() throws Exception {
+        TestProject project = TestProject.independentVersionsProject();
+        AnnotatedTag consoleTag = saveFileInModuleAndTag(project, "console-app", "1.2", 3);
+        AnnotatedTag coreTag = saveFileInModuleAndTag(project, "core-utils", "2", 0);
+        project.commitRandomFile("console-app");
+        File cacheFile = new File(project.local.getRepository().getDirectory(), "multi-module-release/test-cache");
+
+        CountingDetector walker = new CountingDetector(new TreeWalkingDiffDetector(project.local.getRepository()));
+        DiffDetector detector = new CachingDiffDetector(project.local.getRepository(), walker, cacheFile, 100);
+        assertThat(detector.hasChangedSince("console-app", noChildModules(), asList(coreTag)), is(true));
+        assertThat(detector.hasChangedSince("core-utils", noChildModules(), asList(coreTag)), is(false));
+        assertThat(walker.modulesAsked, is(2));
+
+        CountingDetector nextRun = new CountingDetector(new TreeWalkingDiffDetector(project.local.getRepository()));
+        detector = new CachingDiffDetector(project.local.getRepository(), nextRun, cacheFile, 100);
+        assertThat(detector.hasChangedSince("console-app", noChildModules(), asList(coreTag)), is(true));
+        assertThat(detector.hasChangedSince("core-utils", noChildModules(), asList(coreTag)), is(false));
+        assertThat(nextRun.modulesAsked, is(0));
+
+        assertThat(detector.hasChangedSince("console-app", noChildModules(), asList(consoleTag)), is(true));
+        assertThat(nextRun.modulesAsked, is(1));
+    }
+
+    @Test
+    public void movingHeadMeansAskingAgain() throws Exception {
+        TestProject project = TestProject.independentVersionsProject();
+        AnnotatedTag coreTag = saveFileInModuleAndTag(project, "core-utils", "2", 0);
+        File cacheFile = new File(project.local.getRepository().getDirectory(), "multi-module-release/test-cache");
+
+        CountingDetector walker = new CountingDetector(new TreeWalkingDiffDetector(project.local.getRepository()));
+        DiffDetector detector = new CachingDiffDetector(project.local.getRepository(), walker, cacheFile, 100);
+        assertThat(detector.hasChangedSince("core-utils", noChildModules(), asList(coreTag)), is(false));
+
+        project.commitRandomFile("core-utils");
+        assertThat(detector.hasChangedSince("core-utils", noChildModules(), asList(coreTag)), is(true));
+        assertThat(walker.modulesAsked, is(2));
+    }
+
+    @Test
+    public void onlyTheMostRecentlyUsedEntriesAreKept() throws Exception {
+        TestProject project = TestProject.independentVersionsProject();
+        AnnotatedTag coreTag = saveFileInModuleAndTag(project, "core-utils", "2", 0);
+        File cacheFile = new File(project.local.getRepository().getDirectory(), "multi-module-release/test-cache");
+
+        CountingDetector walker = new CountingDetector(new TreeWalkingDiffDetector(project.local.getRepository()));
+        DiffDetector detector = new CachingDiffDetector(project.local.getRepository(), walker, cacheFile, 2);
+        detector.hasChangedSince("core-utils", noChildModules(), asList(coreTag));
+        detector.hasChangedSince("console-app", noChildModules(), asList(coreTag));
+        detector.hasChangedSince("core-utils", noChildModules(), asList(coreTag));
+        detector.hasChangedSince(".", asList("console-app", "core-utils"), asList(coreTag));
+        assertThat(walker.modulesAsked, is(3));
+
+        detector.hasChangedSince("core-utils", noChildModules(), asList(coreTag));
+        assertThat(walker.modulesAsked, is(3));
+        detector.hasChangedSince("console-app", noChildModules(), asList(coreTag));
+        assertThat(walker.modulesAsked, is(4));
+    }
+
+    private static class CountingDetector implements DiffDetector {
+        private final DiffDetector delegate;
+        private int modulesAsked;
+
+        private CountingDetector(DiffDetector delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasChangedSince(String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) throws IOException {
+            modulesAsked++;
+            return delegate.hasChangedSince(modulePath, childModules, tags);
+        }
+
+        @Override
+        public Set<String> changedModules(Collection<ModuleSinceTags> modules) throws IOException {
+            modulesAsked += modules.size();
+            return delegate.changedModules(modules);
+        }
+    }
+
+    private static List<String> noChildModules() {
+        return new ArrayList<String>();
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+public class CachingResolverTest {
+
+    private final Log log = mock(Log.class);
+    private final ArtifactCoordinates core = new ArtifactCoordinates("my.group", "core", "1.0.1", "jar");
+    private final ArtifactCoordinates app = new ArtifactCoordinates("my.group", "app", "1.0.1", "jar");
+    private final ArtifactCoordinates missing = new ArtifactCoordinates("my.group", "missing", "1.0.1", "jar");
+
+    @Test
+    public void onlyReturnsTheArtifactsThatAreResolvable() {
+        CountingResolver repository = new CountingResolver("core", "app");
+        Resolver resolver = new CachingResolver(repository, 4);
+
+        Set<ArtifactCoordinates> resolvable = resolver.resolvable(asList(core, app, missing), log);
+
+        assertThat(resolvable, containsInAnyOrder(core, app));
+        assertThat(repository.lookups.get(), is(3));
+    }
+
+    @Test
+    public void neverLooksUpTheSameArtifactTwice() {
+        CountingResolver repository = new CountingResolver("core");
+        Resolver resolver = new CachingResolver(repository, 4);
+
+        resolver.resolvable(asList(core, missing, core), log);
+        assertThat(resolver.isResolvable("my.group", "core", "1.0.1", "jar", log), is(true));
+        assertThat(resolver.isResolvable("my.group", "missing", "1.0.1", "jar", log), is(false));
+        resolver.resolvable(asList(core, missing), log);
+
+        assertThat(repository.lookups.get(), is(2));
+    }
+
+    @Test
+    public void aDifferentVersionIsADifferentArtifact() {
+        CountingResolver repository = new CountingResolver("core");
+        Resolver resolver = new CachingResolver(repository, 1);
+
+        resolver.isResolvable("my.group", "core", "1.0.1", "jar", log);
+        resolver.isResolvable("my.group", "core", "1.0.2", "jar", log);
+
+        assertThat(repository.lookups.get(), is(2));
+    }
+
+    private static class CountingResolver implements Resolver {
+        private final Set<String> available = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        private CountingResolver(String... availableArtifactIds) {
+            available.addAll(asList(availableArtifactIds));
+        }
+
+        @Override
+        public boolean isResolvable(String groupId, String artifactId, String version, String type, Log log) {
+            lookups.incrementAndGet();
+            return available.contains(artifactId);
+        }
+    }
+}
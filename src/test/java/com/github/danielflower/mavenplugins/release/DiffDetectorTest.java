@@ -1,16 +1,24 @@
 package com.github.danielflower.mavenplugins.release;
 
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.junit.Test;
 import scaffolding.TestProject;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import static com.github.danielflower.mavenplugins.release.AnnotatedTagFinderTest.saveFileInModuleAndTag;
 import static com.github.danielflower.mavenplugins.release.AnnotatedTagFinderTest.tagCurrentCommit;
 import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 
@@ -121,6 +129,147 @@ public class DiffDetectorTest {
             asList(tag1, tag2)), is(false));
     }
 
+    @Test
+    public void treeIdDetectorFindsUnchangedModulesWithoutWalkingHistory() throws Exception {
+        TestProject project = TestProject.independentVersionsProject();
+
+        saveFileInModuleAndTag(project, "console-app", "1.2", 3);
+        AnnotatedTag tag2 = saveFileInModuleAndTag(project, "core-utils", "2", 0);
+        AnnotatedTag tag3 = saveFileInModuleAndTag(project, "console-app", "1.2", 4);
+
+        DiffDetector detector = new TreeIdDiffDetector(project.local.getRepository(), new ExplodingDetector());
+
+        assertThat(detector.hasChangedSince("core-utils", noChildModules(), asList(tag2)), is(false));
+        assertThat(detector.hasChangedSince("console-app", noChildModules(), asList(tag2)), is(true));
+        assertThat(detector.hasChangedSince("console-app", noChildModules(), asList(tag3)), is(false));
+    }
+
+    @Test
+    public void treeIdDetectorIgnoresChangesInChildModuleFolders() throws IOException, GitAPIException {
+        TestProject project = TestProject.nestedProject();
+
+        AnnotatedTag tag1 = saveFileInModuleAndTag(project, "server-modules", "1.0.2.4", 0);
+        project.commitRandomFile("server-modules/server-module-a");
+
+        DiffDetector detector = new TreeIdDiffDetector(project.local.getRepository(), new ExplodingDetector());
+        assertThat(detector.hasChangedSince("server-modules", asList("server-module-a", "server-module-b"),
+            asList(tag1)), is(false));
+
+        project.commitRandomFile("server-modules");
+        assertThat(detector.hasChangedSince("server-modules", asList("server-module-a", "server-module-b"),
+            asList(tag1)), is(true));
+    }
+
+    @Test
+    public void treeIdDetectorFallsBackToWalkingWhenAChildModuleIsMissing() throws IOException, GitAPIException {
+        TestProject project = TestProject.nestedProject();
+
+        AnnotatedTag tag1 = saveFileInModuleAndTag(project, "server-modules", "1.0.2.4", 0);
+        project.commitRandomFile("server-modules");
+
+        DiffDetector detector = new TreeIdDiffDetector(project.local.getRepository(), new TreeWalkingDiffDetector(project.local.getRepository()));
+        assertThat(detector.hasChangedSince("server-modules", asList("server-module-a", "no-longer-here"),
+            asList(tag1)), is(true));
+    }
+
+    @Test
+    public void treeIdDetectorCanDetectLatestTagOnBranch() throws Exception {
+        TestProject project = TestProject.singleModuleProject();
+        AnnotatedTag tag1 = saveFileInModuleAndTag(project, ".", "1.0", 0);
+        project.createBranch("feature");
+        project.commitRandomFile(".");
+        AnnotatedTag tag2 = saveFileInModuleAndTag(project, ".", "1.0", 1);
+        project.checkoutBranch("feature");
+
+        DiffDetector detector = new TreeIdDiffDetector(project.local.getRepository(), new ExplodingDetector());
+        assertThat(detector.hasChangedSince(".", noChildModules(), asList(tag1, tag2)), is(false));
+    }
+
+    @Test
+    public void canDetectChangesForManyModulesInOneWalk() throws Exception {
+        TestProject project = TestProject.independentVersionsProject();
+
+        AnnotatedTag consoleTag = saveFileInModuleAndTag(project, "console-app", "1.2", 3);
+        AnnotatedTag coreTag = saveFileInModuleAndTag(project, "core-utils", "2", 0);
+        project.commitRandomFile("console-app");
+
+        DiffDetector detector = new TreeWalkingDiffDetector(project.local.getRepository());
+        assertThat(detector.changedModules(asList(
+            new ModuleSinceTags("console-app", noChildModules(), asList(consoleTag)),
+            new ModuleSinceTags("core-utils", noChildModules(), asList(coreTag)),
+            new ModuleSinceTags(".", asList("console-app", "core-utils"), asList(coreTag)))),
+            containsInAnyOrder("console-app"));
+
+        project.commitRandomFile(".");
+        assertThat(detector.changedModules(asList(
+            new ModuleSinceTags("core-utils", noChildModules(), asList(coreTag)),
+            new ModuleSinceTags(".", asList("console-app", "core-utils"), asList(coreTag)))),
+            containsInAnyOrder("."));
+    }
+
+    @Test
+    public void batchWalkIgnoresChangesInChildModuleFolders() throws IOException, GitAPIException {
+        TestProject project = TestProject.nestedProject();
+
+        AnnotatedTag tag1 = saveFileInModuleAndTag(project, "server-modules", "1.0.2.4", 0);
+        project.commitRandomFile("server-modules/server-module-a");
+
+        DiffDetector detector = new TreeWalkingDiffDetector(project.local.getRepository());
+        ModuleSinceTags serverModules = new ModuleSinceTags("server-modules", asList("server-module-a", "server-module-b"), asList(tag1));
+        ModuleSinceTags serverModuleA = new ModuleSinceTags("server-modules/server-module-a", noChildModules(), asList(tag1));
+        assertThat(detector.changedModules(asList(serverModules, serverModuleA)), containsInAnyOrder("server-modules/server-module-a"));
+    }
+
+    @Test
+    public void batchWalkCanDetectLatestTagOnBranch() throws Exception {
+        TestProject project = TestProject.singleModuleProject();
+        AnnotatedTag tag1 = saveFileInModuleAndTag(project, ".", "1.0", 0);
+        project.createBranch("feature");
+        project.commitRandomFile(".");
+        AnnotatedTag tag2 = saveFileInModuleAndTag(project, ".", "1.0", 1);
+        project.checkoutBranch("feature");
+
+        DiffDetector detector = new TreeWalkingDiffDetector(project.local.getRepository());
+        assertThat(detector.changedModules(asList(new ModuleSinceTags(".", noChildModules(), asList(tag1, tag2)))), is(empty()));
+    }
+
+    @Test
+    public void batchWalkStopsAtTheCommonAncestorOfMoreReleasesThanOneWalkCanFlag() throws Exception {
+        TestProject project = TestProject.singleModuleProject();
+        project.commitRandomFile(".");
+        List<Set<ObjectId>> releaseCommits = new ArrayList<Set<ObjectId>>();
+        for (int i = 0; i < TreeWalkingDiffDetector.RELEASES_PER_WALK + 5; i++) {
+            AnnotatedTag tag = saveFileInModuleAndTag(project, ".", "1.0", i);
+            releaseCommits.add(Collections.singleton(tag.ref().getTarget().getObjectId()));
+        }
+        project.commitRandomFile(".");
+        ObjectId head = project.local.getRepository().resolve("HEAD");
+
+        TreeWalkingDiffDetector detector = new TreeWalkingDiffDetector(project.local.getRepository());
+        assertThat(detector.commonAncestors(head, releaseCommits), contains(releaseCommits.get(0).iterator().next()));
+    }
+
+    @Test
+    public void treeIdDetectorHandsUndecidedModulesToTheFallbackTogether() throws IOException, GitAPIException {
+        TestProject project = TestProject.nestedProject();
+
+        AnnotatedTag tag1 = saveFileInModuleAndTag(project, "server-modules", "1.0.2.4", 0);
+        project.commitRandomFile("server-modules");
+
+        DiffDetector detector = new TreeIdDiffDetector(project.local.getRepository(), new TreeWalkingDiffDetector(project.local.getRepository()));
+        assertThat(detector.changedModules(asList(
+            new ModuleSinceTags("server-modules", asList("server-module-a", "no-longer-here"), asList(tag1)),
+            new ModuleSinceTags("server-modules/server-module-a", noChildModules(), asList(tag1)))),
+            containsInAnyOrder("server-modules"));
+    }
+
+    private static class ExplodingDetector implements DiffDetector {
+        @Override
+        public boolean hasChangedSince(String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) {
+            throw new AssertionError("Should not have needed to walk the history");
+        }
+    }
+
     private static java.util.List<String> noChildModules() {
         return new ArrayList<String>();
     }
@@ -0,0 +1,142 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.ArtifactRepository;
+import org.eclipse.aether.repository.LocalArtifactRequest;
+import org.eclipse.aether.repository.LocalArtifactResult;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.LocalRepositoryManager;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.VersionRangeRequest;
+import org.eclipse.aether.resolution.VersionRangeResolutionException;
+import org.eclipse.aether.resolution.VersionRangeResult;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.eclipse.aether.version.Version;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ExistenceCheckingResolverTest {
+
+    private static final String URL = "https://repo.example.com/releases";
+
+    private final Log log = mock(Log.class);
+    private final RepositorySystem repositorySystem = mock(RepositorySystem.class);
+    private final RepositorySystemSession session = mock(RepositorySystemSession.class);
+    private final LocalRepositoryManager localRepositoryManager = mock(LocalRepositoryManager.class);
+    private final RemoteRepository remote = new RemoteRepository.Builder("releases", "default", URL).build();
+    private final ArtifactCoordinates core = new ArtifactCoordinates("my.group", "core", "1.0.1", "jar");
+    private ExistenceCheckingResolver resolver;
+
+    @Before
+    public void setup() throws Exception {
+        when(session.getLocalRepositoryManager()).thenReturn(localRepositoryManager);
+        when(localRepositoryManager.find(eq(session), any(LocalArtifactRequest.class)))
+            .thenReturn(new LocalArtifactResult(new LocalArtifactRequest()));
+        when(repositorySystem.resolveVersionRange(eq(session), any(VersionRangeRequest.class)))
+            .thenReturn(new VersionRangeResult(new VersionRangeRequest()));
+        when(repositorySystem.resolveArtifact(eq(session), any(ArtifactRequest.class)))
+            .thenThrow(new ArtifactResolutionException(Collections.<ArtifactResult>emptyList(), "not found"));
+        resolver = new ExistenceCheckingResolver(repositorySystem, session, singletonList(remote));
+    }
+
+    @Test
+    public void anArtifactThatWasOnlyInstalledLocallyIsResolvableButNotInARemoteRepository() throws Exception {
+        when(localRepositoryManager.find(eq(session), any(LocalArtifactRequest.class)))
+            .thenReturn(new LocalArtifactResult(new LocalArtifactRequest()).setAvailable(true));
+
+        assertThat(resolver.locate(core, log), equalTo(Resolver.LOCAL_REPOSITORY));
+        assertThat(resolver.isResolvable("my.group", "core", "1.0.1", "jar", log), is(true));
+        verify(repositorySystem, never()).resolveVersionRange(eq(session), any(VersionRangeRequest.class));
+    }
+
+    @Test
+    public void anArtifactDownloadedEarlierIsInTheRepositoryItWasDownloadedFrom() throws Exception {
+        when(localRepositoryManager.find(eq(session), any(LocalArtifactRequest.class)))
+            .thenReturn(new LocalArtifactResult(new LocalArtifactRequest()).setAvailable(true).setRepository(remote));
+
+        assertThat(resolver.locate(core, log), equalTo(URL));
+        verify(repositorySystem, never()).resolveVersionRange(eq(session), any(VersionRangeRequest.class));
+    }
+
+    @Test
+    public void aVersionListedInTheRemoteMetadataIsFoundWithoutDownloadingThePom() throws Exception {
+        when(repositorySystem.resolveVersionRange(eq(session), any(VersionRangeRequest.class)))
+            .thenReturn(versionsIn(remote));
+
+        assertThat(resolver.locate(core, log), equalTo(URL));
+        verify(repositorySystem, never()).resolveArtifact(eq(session), any(ArtifactRequest.class));
+    }
+
+    @Test
+    public void aVersionOnlyListedInTheLocalMetadataIsNotInARemoteRepository() throws Exception {
+        when(repositorySystem.resolveVersionRange(eq(session), any(VersionRangeRequest.class)))
+            .thenReturn(versionsIn(new LocalRepository(new File("target/local-repo"))));
+
+        assertThat(resolver.locate(core, log), equalTo(Resolver.LOCAL_REPOSITORY));
+    }
+
+    @Test
+    public void aVersionMissingFromTheMetadataIsFoundByResolvingThePom() throws Exception {
+        doReturn(new ArtifactResult(new ArtifactRequest()).setRepository(remote))
+            .when(repositorySystem).resolveArtifact(eq(session), any(ArtifactRequest.class));
+
+        assertThat(resolver.locate(core, log), equalTo(URL));
+    }
+
+    @Test
+    public void anArtifactThatIsNowhereIsNotResolvable() {
+        assertThat(resolver.locate(core, log), nullValue());
+        assertThat(resolver.isResolvable("my.group", "core", "1.0.1", "jar", log), is(false));
+    }
+
+    @Test
+    public void theMetadataFailingToResolveFallsBackToThePom() throws Exception {
+        when(repositorySystem.resolveVersionRange(eq(session), any(VersionRangeRequest.class)))
+            .thenThrow(new VersionRangeResolutionException(new VersionRangeResult(new VersionRangeRequest()), "unreachable"));
+        doReturn(new ArtifactResult(new ArtifactRequest()).setRepository(remote))
+            .when(repositorySystem).resolveArtifact(eq(session), any(ArtifactRequest.class));
+
+        assertThat(resolver.locate(core, log), equalTo(URL));
+        verify(log).debug(anyString());
+    }
+
+    @Test
+    public void anArtifactIsNotResolvableWhenBothLookupsFail() throws Exception {
+        when(repositorySystem.resolveVersionRange(eq(session), any(VersionRangeRequest.class)))
+            .thenThrow(new VersionRangeResolutionException(new VersionRangeResult(new VersionRangeRequest()), "unreachable"));
+
+        assertThat(resolver.locate(core, log), nullValue());
+        verify(log).debug(anyString());
+        verify(log).info(anyString());
+    }
+
+    private static VersionRangeResult versionsIn(ArtifactRepository repository) throws Exception {
+        Version version = new GenericVersionScheme().parseVersion("1.0.1");
+        VersionRangeResult result = new VersionRangeResult(new VersionRangeRequest());
+        result.addVersion(version);
+        result.setRepository(version, repository);
+        return result;
+    }
+}
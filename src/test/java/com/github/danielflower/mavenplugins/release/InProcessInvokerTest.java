@@ -0,0 +1,116 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.Maven;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.LegacySupport;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.shared.invoker.DefaultInvocationRequest;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.MavenInvocationException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Properties;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class InProcessInvokerTest {
+
+    private final Log log = mock(Log.class);
+    private final Maven maven = mock(Maven.class);
+    private final MavenSession session = mock(MavenSession.class);
+    private final LegacySupport legacySupport = mock(LegacySupport.class);
+    private final MavenExecutionRequest outerRequest = new DefaultMavenExecutionRequest();
+    private final InProcessInvoker invoker = new InProcessInvoker(log, maven, session, legacySupport);
+
+    @Before
+    public void setup() {
+        outerRequest.setGoals(asList("releaser:release"));
+        outerRequest.setSelectedProjects(asList("not-for-the-release-build"));
+        Properties userProperties = new Properties();
+        userProperties.setProperty("fromCommandLine", "yes");
+        outerRequest.setUserProperties(userProperties);
+        when(session.getRequest()).thenReturn(outerRequest);
+        when(legacySupport.getSession()).thenReturn(session);
+    }
+
+    @Test
+    public void theReleaseGoalsRunInTheCurrentMavenWithTheOptionsFromTheGoals() throws Exception {
+        when(maven.execute(any(MavenExecutionRequest.class))).thenReturn(new DefaultMavenExecutionResult());
+        InvocationRequest request = new DefaultInvocationRequest();
+        request.setGoals(asList("deploy", "-DskipTests=true", "-Dquick -Pextra,more site"));
+        request.setProfiles(asList("release"));
+        request.setProjects(asList("core", "app"));
+        request.setAlsoMake(true);
+        request.setBatchMode(true);
+
+        assertThat(invoker.execute(request).getExitCode(), is(0));
+
+        ArgumentCaptor<MavenExecutionRequest> captor = ArgumentCaptor.forClass(MavenExecutionRequest.class);
+        verify(maven).execute(captor.capture());
+        MavenExecutionRequest executed = captor.getValue();
+        assertThat(executed.getGoals(), contains("deploy", "site"));
+        assertThat(executed.getActiveProfiles(), contains("release", "extra", "more"));
+        assertThat(executed.getSelectedProjects(), contains("core", "app"));
+        assertThat(executed.getMakeBehavior(), equalTo(MavenExecutionRequest.REACTOR_MAKE_UPSTREAM));
+        assertThat(executed.getUserProperties().getProperty("skipTests"), equalTo("true"));
+        assertThat(executed.getUserProperties().getProperty("quick"), equalTo("true"));
+        assertThat(executed.getUserProperties().getProperty("fromCommandLine"), equalTo("yes"));
+        assertThat(executed.isInteractiveMode(), is(false));
+        assertThat(outerRequest.getGoals(), contains("releaser:release"));
+        verify(legacySupport).setSession(session);
+    }
+
+    @Test
+    public void aFailedBuildGivesANonZeroExitCodeAndTheOuterSessionIsRestored() throws Exception {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        when(maven.execute(any(MavenExecutionRequest.class))).thenAnswer(invocation -> {
+            Thread.currentThread().setContextClassLoader(new ClassLoader() {});
+            return new DefaultMavenExecutionResult().addException(new RuntimeException("compilation failure"));
+        });
+        InvocationRequest request = new DefaultInvocationRequest();
+        request.setGoals(asList("deploy"));
+
+        assertThat(invoker.execute(request).getExitCode(), is(1));
+        assertThat(Thread.currentThread().getContextClassLoader(), sameInstance(classLoader));
+        verify(legacySupport).setSession(session);
+    }
+
+    @Test(expected = MavenInvocationException.class)
+    public void optionsThatCannotBeAppliedInProcessAreRejected() throws Exception {
+        InvocationRequest request = new DefaultInvocationRequest();
+        request.setGoals(asList("deploy", "-T 4"));
+        invoker.execute(request);
+    }
+
+    @Test
+    public void noMakeBehaviourUnlessUpstreamModulesAreWanted() throws Exception {
+        InvocationRequest request = new DefaultInvocationRequest();
+        request.setGoals(asList("install"));
+        assertThat(invoker.toExecutionRequest(request).getMakeBehavior(), is(nullValue()));
+    }
+
+    @Test
+    public void threadsFromTheRequestAreUsedForTheBuild() throws Exception {
+        InvocationRequest request = new DefaultInvocationRequest();
+        request.setGoals(asList("install"));
+        request.setThreads("3");
+        MavenExecutionRequest executed = invoker.toExecutionRequest(request);
+        assertThat(executed.getDegreeOfConcurrency(), is(3));
+        assertThat(executed.getBuilderId(), equalTo("multithreaded"));
+    }
+}
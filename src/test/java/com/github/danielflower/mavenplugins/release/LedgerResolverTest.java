@@ -0,0 +1,140 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+public class LedgerResolverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Log log = mock(Log.class);
+    private final ArtifactCoordinates core = new ArtifactCoordinates("my.group", "core", "1.0.1", "jar");
+    private final ArtifactCoordinates app = new ArtifactCoordinates("my.group", "app", "1.0.1", "jar");
+
+    @Test
+    public void artifactsFoundInTheRepositoryAreRememberedAcrossRuns() throws Exception {
+        File ledgerFile = new File(folder.getRoot(), "ledger/published-artifacts");
+        FileRepository repository = new FileRepository(folder.newFolder("repo"));
+        repository.publish(core);
+
+        Resolver resolver = new LedgerResolver(repository, new PublishedArtifactLedger(ledgerFile), singletonList(repository.url()));
+        assertThat(resolver.resolvable(asList(core, app), log), contains(core));
+        assertThat(repository.lookups, is(2));
+
+        Resolver nextRun = new LedgerResolver(repository, new PublishedArtifactLedger(ledgerFile), singletonList(repository.url()));
+        assertThat(nextRun.isResolvable("my.group", "core", "1.0.1", "jar", log), is(true));
+        assertThat(repository.lookups, is(2));
+
+        assertThat(nextRun.isResolvable("my.group", "app", "1.0.1", "jar", log), is(false));
+        assertThat(repository.lookups, is(3));
+    }
+
+    @Test
+    public void recordedDeploymentsNeverNeedLookingUp() throws Exception {
+        File ledgerFile = new File(folder.getRoot(), "published-artifacts");
+        new PublishedArtifactLedger(ledgerFile).add("https://repo.example.com/releases", asList(core, app));
+        new PublishedArtifactLedger(ledgerFile).add("https://repo.example.com/releases", singletonList(core));
+
+        FileRepository emptyRepository = new FileRepository(folder.newFolder("repo"));
+        Resolver resolver = new LedgerResolver(emptyRepository, new PublishedArtifactLedger(ledgerFile),
+            asList(emptyRepository.url(), "https://repo.example.com/releases"));
+        assertThat(resolver.resolvable(asList(core, app), log), containsInAnyOrder(core, app));
+        assertThat(emptyRepository.lookups, is(0));
+        assertThat(Files.readAllLines(ledgerFile.toPath(), StandardCharsets.UTF_8),
+            contains("https://repo.example.com/releases my.group:core:jar:1.0.1", "https://repo.example.com/releases my.group:app:jar:1.0.1"));
+    }
+
+    @Test
+    public void artifactsRecordedForOtherRepositoriesAreLookedUp() throws Exception {
+        File ledgerFile = new File(folder.getRoot(), "published-artifacts");
+        new PublishedArtifactLedger(ledgerFile).add("https://other.example.com/releases", singletonList(core));
+
+        FileRepository emptyRepository = new FileRepository(folder.newFolder("repo"));
+        Resolver resolver = new LedgerResolver(emptyRepository, new PublishedArtifactLedger(ledgerFile), singletonList(emptyRepository.url()));
+        assertThat(resolver.isResolvable("my.group", "core", "1.0.1", "jar", log), is(false));
+        assertThat(emptyRepository.lookups, is(1));
+    }
+
+    @Test
+    public void artifactsThatAreOnlyInTheLocalRepositoryAreResolvableButNotRecorded() throws Exception {
+        File ledgerFile = new File(folder.getRoot(), "published-artifacts");
+        Resolver installedOnly = (groupId, artifactId, version, type, log) -> true;
+
+        Resolver resolver = new LedgerResolver(installedOnly, new PublishedArtifactLedger(ledgerFile), singletonList("https://repo.example.com/releases"));
+        assertThat(resolver.isResolvable("my.group", "core", "1.0.1", "jar", log), is(true));
+        assertThat(ledgerFile.exists(), is(false));
+    }
+
+    @Test
+    public void linesWithoutARepositoryAreIgnored() throws Exception {
+        File ledgerFile = new File(folder.getRoot(), "published-artifacts");
+        Files.write(ledgerFile.toPath(), singletonList("my.group:core:jar:1.0.1"), StandardCharsets.UTF_8);
+
+        assertThat(new PublishedArtifactLedger(ledgerFile).contains("my.group:core:jar:1.0.1", core), is(false));
+    }
+
+    @Test
+    public void onlyDeployingReleasesAreRecorded() {
+        assertThat(ReleaseMojo.deploys(null), is(true));
+        assertThat(ReleaseMojo.deploys(asList("clean", "deploy")), is(true));
+        assertThat(ReleaseMojo.deploys(asList("deploy:deploy")), is(true));
+        assertThat(ReleaseMojo.deploys(asList("install")), is(false));
+        assertThat(ReleaseMojo.skipsDeploy(null), is(false));
+        assertThat(ReleaseMojo.skipsDeploy("-DskipITs -Dmaven.deploy.skip=true"), is(true));
+        assertThat(ReleaseMojo.skipsDeploy("-Dmaven.deploy.skip"), is(true));
+        assertThat(ReleaseMojo.skipsDeploy("-Dmaven.deploy.skip=false"), is(false));
+    }
+
+    /**
+     * Stands in for a Maven repository laid out on disk.
+     */
+    private static class FileRepository implements Resolver {
+        private final File root;
+        private int lookups;
+
+        private FileRepository(File root) {
+            this.root = root;
+        }
+
+        String url() {
+            return root.toURI().toString();
+        }
+
+        void publish(ArtifactCoordinates artifact) throws IOException {
+            File file = fileFor(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getType());
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), new byte[0]);
+        }
+
+        @Override
+        public boolean isResolvable(String groupId, String artifactId, String version, String type, Log log) {
+            lookups++;
+            return fileFor(groupId, artifactId, version, type).isFile();
+        }
+
+        @Override
+        public String locate(ArtifactCoordinates artifact, Log log) {
+            return isResolvable(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getType(), log) ? url() : null;
+        }
+
+        private File fileFor(String groupId, String artifactId, String version, String type) {
+            return new File(root, groupId.replace('.', '/') + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + "." + type);
+        }
+    }
+}
@@ -1,12 +1,20 @@
 package com.github.danielflower.mavenplugins.release;
 
+import org.apache.maven.project.MavenProject;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.junit.Assert;
 import org.junit.Test;
 import scaffolding.TestProject;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 
 import static com.github.danielflower.mavenplugins.release.GitHelper.scmUrlToRemote;
@@ -14,6 +22,11 @@ import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 import static scaffolding.TestProject.dirToGitScmReference;
 
 public class LocalGitRepoTest {
@@ -53,6 +66,129 @@ public class LocalGitRepoTest {
         assertThat(repo.tagsFrom(tags("blah", "some-tag")), equalTo(asList("some-tag")));
     }
 
+    @Test
+    public void onlyListsTheRemoteTagsStartingWithTheGivenPrefixes() throws Exception {
+        LocalGitRepo repo = new LocalGitRepo(project.local, new RemoteTagFetcher(project.local, null, null),
+                                             new LocalTagPusher(project.local));
+        tag(project.origin, "core-1.0.1");
+        tag(project.origin, "core-1.0.2");
+        tag(project.origin, "core-2.0.0");
+        tag(project.origin, "app-1.0.0");
+
+        repo.limitTagsTo(asList("core-1.0", "console-app-3.2"));
+
+        assertThat(tagNames(repo.allTags()), containsInAnyOrder("core-1.0.1", "core-1.0.2"));
+    }
+
+    @Test
+    public void theRepositoryConfigurationIsNotChangedToAskForProtocolVersionTwo() throws Exception {
+        StoredConfig config = project.local.getRepository().getConfig();
+        File configFile = new File(project.local.getRepository().getDirectory(), "config");
+        byte[] before = Files.readAllBytes(configFile.toPath());
+        LocalGitRepo repo = new LocalGitRepo(project.local, new RemoteTagFetcher(project.local, null, null),
+                                             new LocalTagPusher(project.local));
+        tag(project.origin, "core-1.0.1");
+
+        repo.limitTagsTo(asList("core-1.0"));
+
+        assertThat(tagNames(repo.allTags()), contains("core-1.0.1"));
+        assertThat(config.getString("protocol", null, "version"), nullValue());
+        assertThat(Files.readAllBytes(configFile.toPath()), equalTo(before));
+    }
+
+    @Test
+    public void filtersTheTagsWhenTheServerOnlySpeaksProtocolVersionZero() throws Exception {
+        StoredConfig config = project.local.getRepository().getConfig();
+        config.setString("protocol", null, "version", "0");
+        config.save();
+        LocalGitRepo repo = new LocalGitRepo(project.local, new RemoteTagFetcher(project.local, null, null),
+                                             new LocalTagPusher(project.local));
+        tag(project.origin, "core-1.0.1");
+        tag(project.origin, "app-1.0.0");
+
+        repo.limitTagsTo(asList("core-1.0"));
+
+        assertThat(tagNames(repo.allTags()), contains("core-1.0.1"));
+        assertThat(config.getString("protocol", null, "version"), equalTo("0"));
+    }
+
+    @Test
+    public void aCleanWorkingTreeCanBeReleased() throws Exception {
+        TestProject nested = TestProject.nestedProject();
+        LocalGitRepo repo = new LocalGitRepo(nested.local, new LocalTagFetcher(nested.local), new LocalTagPusher(nested.local));
+        repo.errorIfNotClean(new HashSet<String>());
+        repo.errorIfNotClean(new HashSet<String>(), asList("core-utils", "console-app"));
+    }
+
+    @Test
+    public void changedAndUntrackedFilesAreReported() throws Exception {
+        TestProject nested = TestProject.nestedProject();
+        LocalGitRepo repo = new LocalGitRepo(nested.local, new LocalTagFetcher(nested.local), new LocalTagPusher(nested.local));
+        Files.write(new File(nested.localDir, "core-utils/pom.xml").toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(nested.localDir, "console-app/untracked.txt").toPath(), "new".getBytes(StandardCharsets.UTF_8));
+
+        try {
+            repo.errorIfNotClean(new HashSet<String>());
+            Assert.fail("Should have thrown");
+        } catch (ValidationException e) {
+            assertThat(e.getMessages(), hasItems("Uncommitted:", " * core-utils/pom.xml", "Untracked:", " * console-app/untracked.txt"));
+        }
+    }
+
+    @Test
+    public void ignoredUntrackedPathsAndPathsOutsideTheModulesAreNotChecked() throws Exception {
+        TestProject nested = TestProject.nestedProject();
+        LocalGitRepo repo = new LocalGitRepo(nested.local, new LocalTagFetcher(nested.local), new LocalTagPusher(nested.local));
+        File buildOutput = new File(nested.localDir, "console-app/build-output");
+        buildOutput.mkdirs();
+        Files.write(new File(buildOutput, "big.bin").toPath(), "output".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(nested.localDir, "core-utils/untracked.txt").toPath(), "new".getBytes(StandardCharsets.UTF_8));
+
+        repo.errorIfNotClean(new HashSet<String>(asList("console-app/build-output")), asList("console-app"));
+
+        try {
+            repo.errorIfNotClean(new HashSet<String>(asList("console-app/build-output")), asList("console-app", "core-utils"));
+            Assert.fail("Should have thrown");
+        } catch (ValidationException e) {
+            assertThat(e.getMessages(), hasItems(" * core-utils/untracked.txt"));
+            assertThat(e.getMessages(), not(hasItems(" * console-app/build-output/big.bin")));
+        }
+    }
+
+    @Test
+    public void aRootAggregatorOnlyHasItsPomChecked() throws Exception {
+        TestProject nested = TestProject.nestedProject();
+        LocalGitRepo repo = new LocalGitRepo(nested.local, new LocalTagFetcher(nested.local), new LocalTagPusher(nested.local));
+        List<String> paths = ReleaseMojo.modulePathsIn(nested.localDir,
+            asList(project(nested.localDir, "pom"), project(new File(nested.localDir, "core-utils"), "jar")));
+        assertThat(paths, contains("pom.xml", "core-utils"));
+
+        Files.write(new File(nested.localDir, "notes.txt").toPath(), "new".getBytes(StandardCharsets.UTF_8));
+        repo.errorIfNotClean(new HashSet<String>(), paths);
+
+        Files.write(new File(nested.localDir, "pom.xml").toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+        try {
+            repo.errorIfNotClean(new HashSet<String>(), paths);
+            Assert.fail("Should have thrown");
+        } catch (ValidationException e) {
+            assertThat(e.getMessages(), hasItems(" * pom.xml"));
+            assertThat(e.getMessages(), not(hasItems(" * notes.txt")));
+        }
+    }
+
+    @Test
+    public void aRootProjectWithSourcesHasTheWholeWorkingTreeChecked() throws Exception {
+        TestProject single = TestProject.singleModuleProject();
+        assertThat(ReleaseMojo.modulePathsIn(single.localDir, asList(project(single.localDir, "jar"))), contains(""));
+    }
+
+    private static MavenProject project(File dir, String packaging) {
+        MavenProject project = new MavenProject();
+        project.setPackaging(packaging);
+        project.setFile(new File(dir, "pom.xml"));
+        return project;
+    }
+
     @Test
     public void canHaveManyTags() throws GitAPIException {
         int numberOfTags = 50; // setting this to 1000 works but takes too long
@@ -76,6 +212,14 @@ public class LocalGitRepoTest {
         }
         return tags;
     }
+    private static List<String> tagNames(Collection<Ref> refs) {
+        List<String> names = new ArrayList<String>();
+        for (Ref ref : refs) {
+            names.add(AnnotatedTag.stripRefPrefix(ref.getName()));
+        }
+        return names;
+    }
+
     private static List<String> emptyList() {
         return new ArrayList<String>();
     }
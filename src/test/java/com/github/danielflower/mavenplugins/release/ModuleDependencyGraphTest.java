@@ -0,0 +1,171 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.InputLocation;
+import org.apache.maven.model.InputSource;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.Profile;
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+public class ModuleDependencyGraphTest {
+
+    @Test
+    public void indexesModulesByGroupAndArtifact() {
+        ModuleDependencyGraph graph = ModuleDependencyGraph.of(asList(project("core"), project("app")));
+        assertThat(graph.indexOf("my.group", "core"), is(0));
+        assertThat(graph.indexOf("my.group", "app"), is(1));
+        assertThat(graph.indexOf("other.group", "app"), is(-1));
+    }
+
+    @Test
+    public void followsDependenciesAndParents() {
+        MavenProject parent = project("parent");
+        MavenProject core = project("core");
+        core.setParent(parent);
+        MavenProject app = project("app");
+        app.getModel().addDependency(dependency("core"));
+        app.getModel().addDependency(dependency("not-in-reactor"));
+
+        ModuleDependencyGraph graph = ModuleDependencyGraph.of(asList(parent, core, app));
+        assertThat(graph.dependentsOf(0), contains(1));
+        assertThat(graph.dependentsOf(1), contains(2));
+        assertThat(graph.dependentsOf(2), is(empty()));
+    }
+
+    @Test
+    public void followsPluginsAndPluginDependencies() {
+        MavenProject plugin = project("my-plugin");
+        MavenProject helper = project("plugin-helper");
+        MavenProject app = project("app");
+        Plugin usage = new Plugin();
+        usage.setGroupId("my.group");
+        usage.setArtifactId("my-plugin");
+        usage.addDependency(dependency("plugin-helper"));
+        app.getModel().setBuild(new Build());
+        app.getModel().getBuild().addPlugin(usage);
+
+        ModuleDependencyGraph graph = ModuleDependencyGraph.of(asList(plugin, helper, app));
+        assertThat(graph.dependentsOf(0), contains(2));
+        assertThat(graph.dependentsOf(1), contains(2));
+    }
+
+    @Test
+    public void followsDependenciesInProfiles() {
+        MavenProject core = project("core");
+        MavenProject app = project("app");
+        Profile profile = new Profile();
+        profile.setId("extra");
+        profile.addDependency(dependency("core"));
+        app.getModel().addProfile(profile);
+
+        ModuleDependencyGraph graph = ModuleDependencyGraph.of(asList(core, app));
+        assertThat(graph.dependentsOf(0), contains(1));
+    }
+
+    @Test
+    public void managedDependenciesBelongToTheModuleThatDeclaredThem() {
+        MavenProject bom = project("bom");
+        MavenProject core = project("core");
+        MavenProject app = project("app");
+        Dependency managed = dependency("core");
+        InputSource source = new InputSource();
+        source.setModelId("my.group:bom:1.0-SNAPSHOT");
+        managed.setLocation("", new InputLocation(1, 1, source));
+        app.getModel().setDependencyManagement(new DependencyManagement());
+        app.getModel().getDependencyManagement().addDependency(managed);
+
+        ModuleDependencyGraph graph = ModuleDependencyGraph.of(asList(bom, core, app));
+        assertThat(graph.dependentsOf(0), contains(2));
+        assertThat(graph.dependentsOf(1), is(empty()));
+    }
+
+    @Test
+    public void upstreamModulesAreTheOnesAlsoMadeByMaven() {
+        ModuleDependencyGraph graph = ModuleDependencyGraph.of(diamondAndTail());
+        assertThat(graph.withUpstreamOf(asList(6)), contains(0, 1, 3, 6));
+        assertThat(graph.withUpstreamOf(asList(5, 4)), contains(0, 1, 2, 4, 5));
+    }
+
+    @Test
+    public void theWidthIsTheLargestSetOfModulesThatDoNotReferToEachOther() {
+        ModuleDependencyGraph graph = ModuleDependencyGraph.of(diamondAndTail());
+        assertThat(graph.widthOf(asList(0, 1, 2, 3, 4, 5, 6)), is(3));
+        assertThat(graph.widthOf(asList(4, 5)), is(2));
+        assertThat(graph.widthOf(asList(0, 3, 6)), is(1));
+        assertThat(graph.widthOf(asList(0, 1, 2)), is(2));
+    }
+
+    @Test
+    public void theLongestChainFollowsReferencesThroughOtherModules() {
+        ModuleDependencyGraph graph = ModuleDependencyGraph.of(diamondAndTail());
+        assertThat(graph.longestChainIn(asList(0, 1, 2, 3, 4, 5, 6)), is(4));
+        assertThat(graph.longestChainIn(asList(0, 6)), is(2));
+        assertThat(graph.longestChainIn(asList(4, 5)), is(1));
+    }
+
+    @Test
+    public void modulesThatShareAnUpstreamModuleAreInTheSameGroup() {
+        ModuleDependencyGraph graph = ModuleDependencyGraph.of(diamondAndTail());
+        assertThat(graph.independentGroupsOf(asList(4, 5, 6)), contains(asList(4, 5, 6)));
+    }
+
+    @Test
+    public void modulesThatShareNothingAreInSeparateGroups() {
+        MavenProject core = project("core");
+        MavenProject app = project("app");
+        app.getModel().addDependency(dependency("core"));
+        MavenProject tool = project("tool");
+        MavenProject other = project("other");
+        ModuleDependencyGraph graph = ModuleDependencyGraph.of(asList(core, tool, app, other));
+        assertThat(graph.independentGroupsOf(asList(3, 2, 1)), contains(asList(1), asList(2), asList(3)));
+        assertThat(graph.independentGroupsOf(asList(0, 1, 2)), contains(asList(0, 2), asList(1)));
+    }
+
+    /**
+     * parent &lt;- core &lt;- impl-a &lt;- app, core &lt;- impl-b, parent &lt;- api &lt;- impl-c
+     */
+    private static List<MavenProject> diamondAndTail() {
+        MavenProject parent = project("parent");
+        MavenProject core = project("core");
+        core.setParent(parent);
+        MavenProject api = project("api");
+        api.setParent(parent);
+        MavenProject implA = project("impl-a");
+        implA.getModel().addDependency(dependency("core"));
+        MavenProject implB = project("impl-b");
+        implB.getModel().addDependency(dependency("core"));
+        MavenProject implC = project("impl-c");
+        implC.getModel().addDependency(dependency("api"));
+        MavenProject app = project("app");
+        app.getModel().addDependency(dependency("impl-a"));
+        return asList(parent, core, api, implA, implB, implC, app);
+    }
+
+    private static MavenProject project(String artifactId) {
+        Model model = new Model();
+        model.setGroupId("my.group");
+        model.setArtifactId(artifactId);
+        model.setVersion("1.0-SNAPSHOT");
+        return new MavenProject(model);
+    }
+
+    private static Dependency dependency(String artifactId) {
+        Dependency dependency = new Dependency();
+        dependency.setGroupId("my.group");
+        dependency.setArtifactId(artifactId);
+        dependency.setVersion("1.0-SNAPSHOT");
+        return dependency;
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class MvndInvokerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, String> environment = new HashMap<String, String>();
+
+    @Test
+    public void theConfiguredClientIsUsedIfItExists() throws Exception {
+        File configured = folder.newFile("my-mvnd");
+        environment.put(MvndInvoker.MVND_HOME, folder.newFolder("home").getPath());
+        assertThat(MvndInvoker.findMvnd(configured, environment), equalTo(configured.getAbsoluteFile()));
+    }
+
+    @Test
+    public void aConfiguredClientThatDoesNotExistIsNotFound() {
+        assertThat(MvndInvoker.findMvnd(new File(folder.getRoot(), "missing"), environment), nullValue());
+    }
+
+    @Test
+    public void theClientInMvndHomeIsPreferredToThePath() throws Exception {
+        File home = folder.newFolder("home");
+        File inHome = client(new File(home, "bin"));
+        File onPath = client(folder.newFolder("path"));
+        environment.put(MvndInvoker.MVND_HOME, home.getPath());
+        environment.put("PATH", onPath.getParent());
+        assertThat(MvndInvoker.findMvnd(null, environment), equalTo(inHome));
+    }
+
+    @Test
+    public void theFirstClientOnThePathIsUsedIfMvndHomeIsNotSet() throws Exception {
+        File empty = folder.newFolder("empty");
+        File first = client(folder.newFolder("first"));
+        File second = client(folder.newFolder("second"));
+        environment.put("PATH", empty.getPath() + File.pathSeparator + first.getParent() + File.pathSeparator + second.getParent());
+        assertThat(MvndInvoker.findMvnd(null, environment), equalTo(first));
+    }
+
+    @Test
+    public void nothingIsFoundWhenThereIsNoClient() throws Exception {
+        environment.put("PATH", folder.newFolder("empty").getPath());
+        assertThat(MvndInvoker.findMvnd(null, environment), nullValue());
+    }
+
+    private static File client(File directory) throws Exception {
+        directory.mkdirs();
+        File client = new File(directory, File.separatorChar == '\\' ? "mvnd.cmd" : "mvnd").getAbsoluteFile();
+        client.createNewFile();
+        return client;
+    }
+}
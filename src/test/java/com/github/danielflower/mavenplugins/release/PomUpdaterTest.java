@@ -74,6 +74,69 @@ public class PomUpdaterTest {
 		assertThat(reactor.findByLabel("my.great.group:some-arty"), is(arty));
 	}
 
+	@Test
+	public void eclipseMetadataOfEveryModuleIsUpdatedInOnePass() throws Exception {
+		List<ReleasableModule> modules = new ArrayList<>();
+		List<File> manifests = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			ReleasableModule module = aModule().withArtifactId("bundle-" + i).withSnapshotVersion("1.0-SNAPSHOT").build();
+			File basedir = Files.createTempDirectory("bundle").toFile();
+			File pom = new File(basedir, "pom.xml");
+			Files.write(pom.toPath(), asList(
+				"<project>",
+				"    <modelVersion>4.0.0</modelVersion>",
+				"    <groupId>com.github.danielflower.somegroup</groupId>",
+				"    <artifactId>bundle-" + i + "</artifactId>",
+				"    <version>1.0-SNAPSHOT</version>",
+				"    <packaging>eclipse-plugin</packaging>",
+				"</project>"));
+			File manifest = new File(basedir, "META-INF/MANIFEST.MF");
+			manifest.getParentFile().mkdirs();
+			Files.write(manifest.toPath(), asList(
+				"Manifest-Version: 1.0",
+				"Bundle-ManifestVersion: 2",
+				"Bundle-SymbolicName: bundle-" + i,
+				"Bundle-Version: 1.0.0.qualifier",
+				""));
+			Model originalModel = new Model();
+			originalModel.setVersion("1.0-SNAPSHOT");
+			module.getProject().setOriginalModel(originalModel);
+			module.getProject().getModel().setBuild(new Build());
+			module.getProject().setPackaging("eclipse-plugin");
+			module.getProject().setFile(pom);
+			modules.add(module);
+			manifests.add(manifest);
+		}
+
+		UpdateResult result = new PomUpdater(log, new Reactor(modules)).updateVersion();
+
+		if (result.unexpectedException != null) {
+			throw result.unexpectedException;
+		}
+		for (File manifest : manifests) {
+			Assert.assertTrue(new String(Files.readAllBytes(manifest.toPath())).contains("Bundle-Version: 1.0.123"));
+		}
+	}
+
+	@Test
+	public void theFailureReportedIsTheFirstInBuildOrderWhenPomsAreRewrittenInParallel() throws Exception {
+		List<ReleasableModule> modules = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			ReleasableModule module = aModule().withArtifactId("module-" + i).build();
+			module.getProject().setOriginalModel(new Model());
+			module.getProject().getModel().setBuild(new Build());
+			module.getProject().setFile(new File(Files.createTempDirectory("pom-updater").toFile(), "missing-" + i + ".xml"));
+			modules.add(module);
+		}
+
+		for (int attempt = 0; attempt < 5; attempt++) {
+			UpdateResult result = new PomUpdater(log, new Reactor(modules), null, 4).updateVersion();
+
+			assertThat(result.success(), is(false));
+			Assert.assertTrue(result.unexpectedException.getMessage(), result.unexpectedException.getMessage().contains("missing-0.xml"));
+		}
+	}
+
 	@Test
 	public void testLocation() throws XMLStreamException {
 		String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n" + 
@@ -1,11 +1,15 @@
 package com.github.danielflower.mavenplugins.release;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.junit.Assert;
 import org.junit.Test;
+import scaffolding.TestProject;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -13,6 +17,7 @@ import java.util.Optional;
 import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
 import static scaffolding.ReleasableModuleBuilder.aModule;
 
 public class ReactorTest {
@@ -27,6 +32,17 @@ public class ReactorTest {
         assertThat(reactor.findByLabel("my.great.group:some-arty"), is(arty));
     }
 
+    @Test
+    public void theFirstModuleInBuildOrderWinsWhenLookingUpByGroupAndArtifact() throws Exception {
+        ReleasableModule first = aModule().withGroupId("my.great.group").withArtifactId("some-arty").build();
+        ReleasableModule second = aModule().withGroupId("my.great.group").withArtifactId("some-arty").build();
+        Reactor reactor = new Reactor(asList(aModule().build(), first, second));
+        assertThat(reactor.findModule("my.great.group", "some-arty"), is(first));
+        assertThat(reactor.findModule("my.great.group", "other-arty"), is(nullValue()));
+        assertThat(reactor.findModule("other.group", "some-arty"), is(nullValue()));
+        assertThat(reactor.findByLabel("my.great.group"), is(nullValue()));
+    }
+
     @Test
     public void findOrReturnNullReturnsNullIfNotFound() throws Exception {
         Reactor reactor = new Reactor(asList(
@@ -56,6 +72,76 @@ public class ReactorTest {
         assertThat(Reactor.hasChangedSinceLastRelease(asList(onePointTen, onePointNine), new NeverChanged(), new MavenProject(), "whatever"), is(onePointTen));
     }
 
+    @Test
+    public void modulesAnalysedOnSeveralThreadsComeBackInBuildOrder() throws Exception {
+        TestProject project = TestProject.singleModuleProject();
+        MavenProject root = mavenProject(project.localDir, "root", "1.0-SNAPSHOT");
+        List<MavenProject> projects = new ArrayList<MavenProject>();
+        projects.add(root);
+        for (int i = 0; i < 20; i++) {
+            projects.add(mavenProject(new File(project.localDir, "module-" + i), "module-" + i, "1.0-SNAPSHOT"));
+        }
+
+        for (int run = 0; run < 10; run++) {
+            Reactor reactor = Reactor.fromProjects(mock(Log.class), localRepo(project), root, projects, null, null,
+                NoChangesAction.ReleaseAll, nothingResolvable(), new VersionNamer(), 4);
+
+            List<String> artifactIds = new ArrayList<String>();
+            for (ReleasableModule module : reactor.getModulesInBuildOrder()) {
+                artifactIds.add(module.getArtifactId());
+            }
+            assertThat(artifactIds, equalTo(artifactIdsOf(projects)));
+        }
+    }
+
+    @Test
+    public void whenSeveralModulesFailTheFirstInBuildOrderIsReported() throws Exception {
+        TestProject project = TestProject.singleModuleProject();
+        MavenProject root = mavenProject(project.localDir, "root", "1.0-SNAPSHOT");
+        List<MavenProject> projects = new ArrayList<MavenProject>();
+        projects.add(root);
+        for (int i = 0; i < 20; i++) {
+            // a space is not allowed in a tag name, so these versions cannot be released
+            String version = i == 5 || i == 12 || i == 19 ? i + " invalid-SNAPSHOT" : "1.0-SNAPSHOT";
+            projects.add(mavenProject(new File(project.localDir, "module-" + i), "module-" + i, version));
+        }
+
+        for (int run = 0; run < 10; run++) {
+            try {
+                Reactor.fromProjects(mock(Log.class), localRepo(project), root, projects, null, null,
+                    NoChangesAction.ReleaseAll, nothingResolvable(), new VersionNamer(), 4);
+                Assert.fail("Should have thrown");
+            } catch (ValidationException e) {
+                assertThat(e.getMessage(), equalTo("Sorry, '5 invalid.0' is not a valid version."));
+            }
+        }
+    }
+
+    private static LocalGitRepo localRepo(TestProject project) {
+        return new LocalGitRepo(project.local, new LocalTagFetcher(project.local), new LocalTagPusher(project.local));
+    }
+
+    private static Resolver nothingResolvable() {
+        return (groupId, artifactId, version, type, log) -> false;
+    }
+
+    private static MavenProject mavenProject(File basedir, String artifactId, String version) {
+        MavenProject project = new MavenProject();
+        project.setGroupId("my.group");
+        project.setArtifactId(artifactId);
+        project.setVersion(version);
+        project.setFile(new File(basedir, "pom.xml"));
+        return project;
+    }
+
+    private static List<String> artifactIdsOf(List<MavenProject> projects) {
+        List<String> artifactIds = new ArrayList<String>();
+        for (MavenProject project : projects) {
+            artifactIds.add(project.getArtifactId());
+        }
+        return artifactIds;
+    }
+
     private static class NeverChanged implements DiffDetector {
         @Override
         public boolean hasChangedSince(String modulePath, List<String> childModules, Collection<AnnotatedTag> tags) throws IOException {
@@ -1,9 +1,11 @@
 package com.github.danielflower.mavenplugins.release;
 
+import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Profile;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.invoker.DefaultInvocationRequest;
 import org.apache.maven.shared.invoker.InvocationRequest;
 import org.apache.maven.shared.invoker.InvocationResult;
 import org.apache.maven.shared.invoker.Invoker;
@@ -13,12 +15,22 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static com.github.danielflower.mavenplugins.release.ReleaseInvoker.DEPLOY;
 import static com.github.danielflower.mavenplugins.release.ReleaseInvoker.SKIP_TESTS;
 import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
@@ -55,6 +67,7 @@ public class ReleaseInvokerTest {
 		when(invoker.execute(request)).thenReturn(result);
 		when(activeProfile.getId()).thenReturn(ACTIVE_PROFILE_ID);
 		when(module.getRelativePathToModule()).thenReturn(MODULE_PATH);
+		when(module.getProject()).thenReturn(new MavenProject());
 	}
 
 	@Test
@@ -137,6 +150,157 @@ public class ReleaseInvokerTest {
 		verify(request).setProjects(Mockito.argThat(List::isEmpty));
 	}
 
+	@Test
+	public void runMavenBuild_ThreadsForModulesThatCanBeBuiltTogether() throws Exception {
+		final List<ReleasableModule> modules = new LinkedList<ReleasableModule>();
+		for (final String artifactId : asList("core", "a", "b", "c")) {
+			final MavenProject moduleProject = new MavenProject();
+			moduleProject.setGroupId("com.example");
+			moduleProject.setArtifactId(artifactId);
+			if (!artifactId.equals("core")) {
+				final Dependency dependency = new Dependency();
+				dependency.setGroupId("com.example");
+				dependency.setArtifactId("core");
+				moduleProject.getModel().addDependency(dependency);
+			}
+			final ReleasableModule releasable = mock(ReleasableModule.class);
+			when(releasable.getProject()).thenReturn(moduleProject);
+			when(releasable.getRelativePathToModule()).thenReturn(artifactId);
+			when(releasable.willBeReleased()).thenReturn(true);
+			modules.add(releasable);
+		}
+		when(reactor.getModulesInBuildOrder()).thenReturn(modules);
+		releaseInvoker.setAvailableProcessors(2);
+		releaseInvoker.runMavenBuild(reactor);
+		verify(request).setThreads("2");
+		verify(log).info("The release build has 4 modules, at most 3 of which can be built at the same time, and a critical path of 2 modules");
+	}
+
+	@Test
+	public void runMavenBuild_OneThreadForAChain() throws Exception {
+		when(reactor.getModulesInBuildOrder()).thenReturn(modulesInBuildOrder);
+		when(module.willBeReleased()).thenReturn(true);
+		releaseInvoker.runMavenBuild(reactor);
+		verify(request).setThreads(null);
+	}
+
+	@Test
+	public void runMavenBuild_ConfiguredThreads() throws Exception {
+		when(reactor.getModulesInBuildOrder()).thenReturn(modulesInBuildOrder);
+		when(module.willBeReleased()).thenReturn(true);
+		releaseInvoker.setThreads("1C");
+		releaseInvoker.runMavenBuild(reactor);
+		verify(request).setThreads("1C");
+	}
+
+	@Test
+	public void runMavenBuild_IndependentGroupsAreBuiltSeparately() throws Exception {
+		when(reactor.getModulesInBuildOrder()).thenReturn(asList(
+				independentModule("core"), independentModule("tool"), independentModule("other")));
+		final List<List<String>> built = new CopyOnWriteArrayList<List<String>>();
+		when(invoker.execute(Mockito.any(InvocationRequest.class))).thenAnswer(invocation -> {
+			final InvocationRequest groupRequest = invocation.getArgument(0);
+			built.add(groupRequest.getProjects());
+			return result;
+		});
+		final ReleaseInvoker grouped = new ReleaseInvoker(log, project, new DefaultInvocationRequest(), invoker);
+		grouped.setConcurrentBuilds(2);
+		grouped.runMavenBuild(reactor);
+		assertThat(built, containsInAnyOrder(asList("core"), asList("tool"), asList("other")));
+	}
+
+	@Test
+	public void runMavenBuild_FailuresOfAllGroupsAreReported() throws Exception {
+		when(reactor.getModulesInBuildOrder()).thenReturn(asList(
+				independentModule("core"), independentModule("tool"), independentModule("other")));
+		final InvocationResult failed = mock(InvocationResult.class);
+		when(failed.getExitCode()).thenReturn(1);
+		final MavenInvocationException cannotRun = new MavenInvocationException("no mvn");
+		when(invoker.execute(Mockito.any(InvocationRequest.class))).thenAnswer(invocation -> {
+			final List<String> projects = ((InvocationRequest) invocation.getArgument(0)).getProjects();
+			if (projects.contains("core")) {
+				return failed;
+			} else if (projects.contains("other")) {
+				throw cannotRun;
+			}
+			return result;
+		});
+		final ReleaseInvoker grouped = new ReleaseInvoker(log, project, new DefaultInvocationRequest(), invoker);
+		grouped.setConcurrentBuilds(3);
+		try {
+			grouped.runMavenBuild(reactor);
+			fail("Exception expected here");
+		} catch (final MojoExecutionException e) {
+			assertSame(cannotRun, e.getCause());
+			assertThat(e.getMessage(), containsString("2 of 3 groups"));
+			assertThat(((GroupBuildException) e).getBuiltModules(), contains("tool"));
+		}
+		verify(invoker, times(3)).execute(Mockito.any(InvocationRequest.class));
+	}
+
+	@Test
+	public void runMavenBuild_GroupsAreBuiltWithAllOfTheSettingsOfTheRequest() throws Exception {
+		when(reactor.getModulesInBuildOrder()).thenReturn(asList(independentModule("core"), independentModule("tool")));
+		final List<InvocationRequest> built = new CopyOnWriteArrayList<InvocationRequest>();
+		when(invoker.execute(Mockito.any(InvocationRequest.class))).thenAnswer(invocation -> {
+			built.add(invocation.getArgument(0));
+			return result;
+		});
+		final File localRepository = new File("target/local-repo");
+		final File toolchains = new File("target/toolchains.xml");
+		final DefaultInvocationRequest configured = new DefaultInvocationRequest();
+		configured.setOffline(true);
+		configured.setUpdateSnapshots(true);
+		configured.setLocalRepositoryDirectory(localRepository);
+		configured.setToolchainsFile(toolchains);
+		configured.addShellEnvironment("JAVA_TOOL_OPTIONS", "-Xmx1g");
+		configured.setTimeoutInSeconds(600);
+		final ReleaseInvoker grouped = new ReleaseInvoker(log, project, configured, invoker);
+		grouped.setConcurrentBuilds(2);
+		grouped.runMavenBuild(reactor);
+
+		assertThat(built.size(), is(2));
+		for (final InvocationRequest groupRequest : built) {
+			assertThat(groupRequest.isOffline(), is(true));
+			assertThat(groupRequest.isUpdateSnapshots(), is(true));
+			assertThat(groupRequest.getLocalRepositoryDirectory(null), is(localRepository));
+			assertThat(groupRequest.getToolchainsFile(), is(toolchains));
+			assertThat(groupRequest.getShellEnvironments().get("JAVA_TOOL_OPTIONS"), is("-Xmx1g"));
+			assertThat(groupRequest.getTimeoutInSeconds(), is(600));
+			assertThat(groupRequest.isBatchMode(), is(true));
+		}
+	}
+
+	private static ReleasableModule independentModule(final String artifactId) {
+		final MavenProject moduleProject = new MavenProject();
+		moduleProject.setGroupId("com.example");
+		moduleProject.setArtifactId(artifactId);
+		final ReleasableModule releasable = mock(ReleasableModule.class);
+		when(releasable.getProject()).thenReturn(moduleProject);
+		when(releasable.getRelativePathToModule()).thenReturn(artifactId);
+		when(releasable.willBeReleased()).thenReturn(true);
+		return releasable;
+	}
+
+	@Test
+	public void runMavenBuild_ManyModulesAreGivenInAFile() throws Exception {
+		when(reactor.getModulesInBuildOrder()).thenReturn(modulesInBuildOrder);
+		when(module.willBeReleased()).thenReturn(true);
+		releaseInvoker.setProjectListFileThreshold(0);
+		releaseInvoker.runMavenBuild(reactor);
+		verify(request).setProjects(Mockito.argThat(List::isEmpty));
+		verify(request).setProperties(Mockito.argThat(properties -> {
+			try {
+				final List<String> projects = Files.readAllLines(
+						new File(properties.getProperty(ReleaseProjectSelector.PROJECTS_FILE_PROPERTY)).toPath());
+				return projects.equals(asList(MODULE_PATH))
+						&& new File(properties.getProperty(ReleaseInvoker.EXT_CLASS_PATH)).exists();
+			} catch (IOException e) {
+				return false;
+			}
+		}));
+	}
+
 	@Test
 	public void skipTests() throws Exception {
 		releaseInvoker.setSkipTests(true);
@@ -144,6 +308,34 @@ public class ReleaseInvokerTest {
 		verify(request).setGoals(Mockito.argThat(goals -> goals.size() == 2 && goals.contains(DEPLOY) && goals.contains(SKIP_TESTS)));
 	}
 
+	@Test
+	public void runMavenBuild_WithoutRewrittenPoms() throws Exception {
+		when(reactor.getModulesInBuildOrder()).thenReturn(modulesInBuildOrder);
+		when(module.getGroupId()).thenReturn("com.example");
+		when(module.getArtifactId()).thenReturn("core");
+		when(module.getNewVersion()).thenReturn("1.0.3");
+		releaseInvoker.setPomsRewritten(false);
+		releaseInvoker.runMavenBuild(reactor);
+		verify(request).setProperties(Mockito.argThat(properties -> {
+			try {
+				Properties versions = new Properties();
+				try (FileInputStream in = new FileInputStream(properties.getProperty(ReleaseVersionsModelProcessor.VERSIONS_FILE_PROPERTY))) {
+					versions.load(in);
+				}
+				return "1.0.3".equals(versions.getProperty("com.example:core"))
+					&& new File(properties.getProperty(ReleaseInvoker.EXT_CLASS_PATH)).exists();
+			} catch (IOException e) {
+				return false;
+			}
+		}));
+	}
+
+	@Test
+	public void runMavenBuild_WithRewrittenPomsPassesNoVersions() throws Exception {
+		releaseInvoker.runMavenBuild(reactor);
+		verify(request, never()).setProperties(Mockito.any());
+	}
+
 	@Test(expected = MojoExecutionException.class)
 	public void runMavenBuild_ErrorExitCode() throws Exception {
 		when(result.getExitCode()).thenReturn(1);
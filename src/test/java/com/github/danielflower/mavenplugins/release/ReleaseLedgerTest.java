@@ -0,0 +1,160 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.junit.Assert;
+import org.junit.Test;
+import scaffolding.Photocopier;
+import scaffolding.TestProject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ReleaseLedgerTest {
+
+    private final TestProject project = TestProject.singleModuleProject();
+
+    @Test
+    public void releasesAreReadBackNewestFirstAsPeeledTags() throws Exception {
+        ReleaseLedger ledger = new ReleaseLedger(project.local.getRepository());
+        ObjectId first = head();
+        ledger.append(asList(AnnotatedTag.create("core-1.0.0", "1.0", 0), AnnotatedTag.create("app-2.0.0", "2.0", 0)), first);
+        project.commitRandomFile(".");
+        ObjectId second = head();
+        ledger.append(singletonList(AnnotatedTag.create("core-1.0.1", "1.0", 1)), second);
+
+        List<Ref> records = ledger.records();
+        assertThat(names(records), contains("refs/tags/core-1.0.1", "refs/tags/core-1.0.0", "refs/tags/app-2.0.0"));
+
+        ReleaseTagIndex index = ReleaseTagIndex.of(project.local.getRepository(), records);
+        assertThat(index.buildNumbersFor("core-1.0", "."), containsInAnyOrder(0L, 1L));
+        assertThat(index.tagsFor("core-1.0", ".").get(0).getCommitObjectId(), equalTo(second));
+
+        AnnotatedTag tag = AnnotatedTag.fromRef(project.local.getRepository(), records.get(2));
+        assertThat(tag.name(), equalTo("app-2.0.0"));
+        assertThat(tag.version(), equalTo("2.0"));
+        assertThat(tag.buildNumber(), is(0L));
+        assertThat(tag.getObjectId(), equalTo(first));
+        assertThat(project.local.tagList().call(), is(empty()));
+    }
+
+    @Test
+    public void releasesCanBeRecordedAndPushedWithoutTags() throws Exception {
+        LocalGitRepo repo = new LocalGitRepo(project.local,
+            new LedgerTagFetcher(project.local, null, true, null, null),
+            new LedgerTagFetcher(project.local, null, false, null, null),
+            ledgerPusher(project.local));
+
+        repo.tagAndPushRepo(singletonList(AnnotatedTag.create("single-module-1.0.0", "1.0", 0)));
+
+        assertThat(repo.hasLocalTag("single-module-1.0.0"), is(true));
+        assertThat(project.origin.getRepository().exactRef(ReleaseLedger.REF), is(notNullValue()));
+        assertThat(project.origin.tagList().call(), is(empty()));
+
+        List<AnnotatedTag> found = new AnnotatedTagFinder(new VersionNamer())
+            .tagsForVersion(project.local, repo.localTagIndex(), "single-module", "1.0");
+        assertThat(found.size(), is(1));
+        assertThat(found.get(0).getObjectId(), equalTo(head()));
+    }
+
+    @Test
+    public void releasesRecordedOnTheRemoteAreFetched() throws Exception {
+        new ReleaseLedger(project.origin.getRepository()).append(
+            singletonList(AnnotatedTag.create("single-module-1.0.3", "1.0", 3)), head());
+        LocalGitRepo repo = new LocalGitRepo(project.local,
+            new LedgerTagFetcher(project.local, new RemoteTagFetcher(project.local, null, null), true, null, null),
+            new LocalTagPusher(project.local));
+
+        repo.limitTagsTo(singletonList("single-module-1.0"));
+
+        assertThat(repo.tagsFrom(singletonList(AnnotatedTag.create("single-module-1.0.3", "1.0", 3))),
+            contains("single-module-1.0.3"));
+        assertThat(project.local.getRepository().exactRef(ReleaseLedger.REF), is(notNullValue()));
+    }
+
+    @Test
+    public void aReleaseThatLosesTheRaceToPushTheLedgerAppendsItsRecordsToTheRemoteLedger() throws Exception {
+        Git other = Git.cloneRepository()
+            .setDirectory(Photocopier.folderForSampleProject("single-module"))
+            .setURI(project.originDir.toURI().toString())
+            .call();
+        LedgerTagPusher pusher = ledgerPusher(project.local);
+        LedgerTagPusher otherPusher = ledgerPusher(other);
+
+        otherPusher.pushTags(singletonList(AnnotatedTag.create("single-module-1.0.0", "1.0", 0)));
+        pusher.pushTags(singletonList(AnnotatedTag.create("single-module-1.0.1", "1.0", 1)));
+
+        ObjectId remoteLedger = project.origin.getRepository().exactRef(ReleaseLedger.REF).getObjectId();
+        assertThat(project.local.getRepository().exactRef(ReleaseLedger.REF).getObjectId(), equalTo(remoteLedger));
+        assertThat(names(new ReleaseLedger(project.origin.getRepository()).records()),
+            contains("refs/tags/single-module-1.0.1", "refs/tags/single-module-1.0.0"));
+    }
+
+    @Test
+    public void aReleaseThatLosesTheRaceToAnotherReleaseOfTheSameTagFails() throws Exception {
+        Git other = Git.cloneRepository()
+            .setDirectory(Photocopier.folderForSampleProject("single-module"))
+            .setURI(project.originDir.toURI().toString())
+            .call();
+        ledgerPusher(other).pushTags(singletonList(AnnotatedTag.create("single-module-1.0.0", "1.0", 0)));
+        ObjectId remoteLedger = project.origin.getRepository().exactRef(ReleaseLedger.REF).getObjectId();
+
+        try {
+            ledgerPusher(project.local).pushTags(asList(
+                AnnotatedTag.create("other-module-1.0.0", "1.0", 0), AnnotatedTag.create("single-module-1.0.0", "1.0", 0)));
+            Assert.fail("Should have failed to push");
+        } catch (TagPushException e) {
+            assertThat(e.getMessage(), containsString("[single-module-1.0.0]"));
+        }
+        assertThat(project.origin.getRepository().exactRef(ReleaseLedger.REF).getObjectId(), equalTo(remoteLedger));
+        assertThat(project.local.getRepository().exactRef(ReleaseLedger.REF), is(nullValue()));
+    }
+
+    @Test
+    public void theLocalLedgerIsMovedBackIfItCannotBePushed() throws Exception {
+        ReleaseLedger ledger = new ReleaseLedger(project.local.getRepository());
+        ledger.append(singletonList(AnnotatedTag.create("single-module-1.0.0", "1.0", 0)), head());
+        ObjectId before = project.local.getRepository().exactRef(ReleaseLedger.REF).getObjectId();
+        LedgerTagPusher pusher = new LedgerTagPusher(project.local, null, (refs, atomic) -> {
+            throw new TransportException("The remote hung up");
+        }, new LedgerTagFetcher(project.local, null, true, null, null));
+
+        try {
+            pusher.pushTags(singletonList(AnnotatedTag.create("single-module-1.0.1", "1.0", 1)));
+            Assert.fail("Should have failed to push");
+        } catch (TransportException e) {
+            assertThat(project.local.getRepository().exactRef(ReleaseLedger.REF).getObjectId(), equalTo(before));
+        }
+    }
+
+    private static LedgerTagPusher ledgerPusher(Git git) {
+        return new LedgerTagPusher(git, null, RemoteTagPusher.pushCommand(git, null, null),
+            new LedgerTagFetcher(git, null, true, null, null));
+    }
+
+    private ObjectId head() throws Exception {
+        return project.local.getRepository().resolve("HEAD");
+    }
+
+    private static List<String> names(List<Ref> refs) {
+        List<String> names = new ArrayList<String>();
+        for (Ref ref : refs) {
+            names.add(ref.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.building.DefaultModelProcessor;
+import org.apache.maven.model.io.DefaultModelReader;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.locator.DefaultModelLocator;
+import org.apache.maven.project.MavenProject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Properties;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReleasePomWriterTest {
+
+    private static final String POM = "<project>\n" +
+        "    <modelVersion>4.0.0</modelVersion>\n" +
+        "    <groupId>com.example</groupId>\n" +
+        "    <artifactId>core</artifactId>\n" +
+        "    <version>2.0-SNAPSHOT</version>\n" +
+        "    <dependencies>\n" +
+        "        <dependency>\n" +
+        "            <groupId>com.example</groupId>\n" +
+        "            <artifactId>utils</artifactId>\n" +
+        "            <version>3.0-SNAPSHOT</version>\n" +
+        "        </dependency>\n" +
+        "    </dependencies>\n" +
+        "</project>\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MavenSession session = mock(MavenSession.class);
+    private final Properties userProperties = new Properties();
+    private File pomFile;
+    private MavenProject project;
+
+    @Before
+    public void setup() throws Exception {
+        pomFile = new File(folder.newFolder("core"), "pom.xml");
+        Files.write(pomFile.toPath(), POM.getBytes(StandardCharsets.UTF_8));
+        MavenProject utils = new MavenProject();
+        utils.setGroupId("com.example");
+        utils.setArtifactId("utils");
+        utils.setFile(new File(folder.newFolder("utils"), "pom.xml"));
+        project = new MavenProject();
+        project.setGroupId("com.example");
+        project.setArtifactId("core");
+        project.setFile(pomFile);
+
+        File versionsFile = folder.newFile("release-versions.properties");
+        ReleaseVersions.write(versionsFile, asList(
+            new ReleasableModule(project, new VersionName("2.0-SNAPSHOT", "2.0", 7), null, "core"),
+            new ReleasableModule(utils, new VersionName("3.0-SNAPSHOT", "3.0", 1), null, "utils")));
+        ReleaseVersionsModelProcessor processor = new ReleaseVersionsModelProcessor(
+            new DefaultModelProcessor().setModelLocator(new DefaultModelLocator()).setModelReader(new DefaultModelReader()),
+            ReleaseVersions.read(versionsFile.getPath()));
+        project.setOriginalModel(processor.read(pomFile, Collections.<String, Object>emptyMap()));
+
+        userProperties.setProperty(ReleaseVersionsModelProcessor.VERSIONS_FILE_PROPERTY, versionsFile.getPath());
+        when(session.getUserProperties()).thenReturn(userProperties);
+        when(session.getSystemProperties()).thenReturn(new Properties());
+        when(session.getProjects()).thenReturn(singletonList(project));
+    }
+
+    @Test
+    public void thePublishedPomHasTheReleaseVersions() throws Exception {
+        new ReleasePomWriter().afterProjectsRead(session);
+
+        assertThat(project.getFile(), not(equalTo(pomFile)));
+        Model published = readPom(project.getFile());
+        assertThat(published.getVersion(), equalTo("2.0.7"));
+        assertThat(published.getDependencies().get(0).getVersion(), equalTo("3.0.1"));
+        assertThat(project.getBasedir(), equalTo(pomFile.getParentFile()));
+        assertThat(new String(Files.readAllBytes(pomFile.toPath()), StandardCharsets.UTF_8), equalTo(POM));
+    }
+
+    @Test
+    public void thePomIsUnchangedWhenThereAreNoReleaseVersions() throws Exception {
+        userProperties.clear();
+
+        new ReleasePomWriter().afterProjectsRead(session);
+
+        assertThat(project.getFile(), equalTo(pomFile));
+    }
+
+    private static Model readPom(File file) throws Exception {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return new MavenXpp3Reader().read(reader);
+        }
+    }
+}
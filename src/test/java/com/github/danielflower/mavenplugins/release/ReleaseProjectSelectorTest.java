@@ -0,0 +1,90 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.execution.ProjectDependencyGraph;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static java.util.Arrays.asList;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReleaseProjectSelectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MavenSession session = mock(MavenSession.class);
+    private final ProjectDependencyGraph graph = mock(ProjectDependencyGraph.class);
+    private final Properties userProperties = new Properties();
+    private final ReleaseProjectSelector selector = new ReleaseProjectSelector();
+    private MavenProject core;
+    private MavenProject app;
+    private MavenProject tool;
+
+    @Before
+    public void setup() throws Exception {
+        DefaultMavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        request.setBaseDirectory(folder.getRoot());
+        core = project("core");
+        app = project("app");
+        tool = project("tool");
+        when(session.getRequest()).thenReturn(request);
+        when(session.getUserProperties()).thenReturn(userProperties);
+        when(session.getSystemProperties()).thenReturn(new Properties());
+        when(session.getProjects()).thenReturn(asList(core, app, tool));
+        when(session.getProjectDependencyGraph()).thenReturn(graph);
+        when(graph.getUpstreamProjects(app, true)).thenReturn(asList(core));
+        when(graph.getUpstreamProjects(core, true)).thenReturn(Collections.<MavenProject>emptyList());
+        when(graph.getUpstreamProjects(tool, true)).thenReturn(Collections.<MavenProject>emptyList());
+    }
+
+    @Test
+    public void theListedModulesAndTheirUpstreamModulesAreBuiltInBuildOrder() throws Exception {
+        userProperties.setProperty(ReleaseProjectSelector.PROJECTS_FILE_PROPERTY, projectsFile(asList("app")).getPath());
+        selector.afterProjectsRead(session);
+        verify(session).setProjects(asList(core, app));
+    }
+
+    @Test
+    public void theReactorIsUnchangedWithoutAProjectsFile() throws Exception {
+        selector.afterProjectsRead(session);
+        verify(session, never()).setProjects(anyList());
+    }
+
+    @Test(expected = MavenExecutionException.class)
+    public void aModuleThatIsNotInTheReactorIsAnError() throws Exception {
+        userProperties.setProperty(ReleaseProjectSelector.PROJECTS_FILE_PROPERTY, projectsFile(asList("tool", "missing")).getPath());
+        selector.afterProjectsRead(session);
+    }
+
+    private File projectsFile(List<String> modulePaths) throws Exception {
+        File file = folder.newFile("projects.txt");
+        ReleaseProjectSelector.writeProjects(file, modulePaths);
+        return file;
+    }
+
+    private MavenProject project(String artifactId) {
+        Model model = new Model();
+        model.setGroupId("my.group");
+        model.setArtifactId(artifactId);
+        model.setVersion("1.0-SNAPSHOT");
+        MavenProject project = new MavenProject(model);
+        project.setFile(new File(new File(folder.getRoot(), artifactId), "pom.xml"));
+        return project;
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+import scaffolding.TestProject;
+
+import java.util.List;
+
+import static com.github.danielflower.mavenplugins.release.AnnotatedTagFinderTest.saveFileInModuleAndTag;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ReleaseTagIndexTest {
+
+    @Test
+    public void groupsBuildNumbersByArtifactAndVersion() throws Exception {
+        TestProject project = TestProject.independentVersionsProject();
+        saveFileInModuleAndTag(project, "console-app", "1.2", 3);
+        saveFileInModuleAndTag(project, "console-app", "1.2", 4);
+        saveFileInModuleAndTag(project, "console-app", "1.20", 5);
+        saveFileInModuleAndTag(project, "core-utils", "2", 0);
+
+        ReleaseTagIndex index = ReleaseTagIndex.of(project.local.getRepository(), project.local.tagList().call());
+
+        assertThat(index.buildNumbersFor("console-app-1.2", "."), containsInAnyOrder(3L, 4L));
+        assertThat(index.buildNumbersFor("console-app-1.20", "."), contains(5L));
+        assertThat(index.buildNumbersFor("core-utils-2", "."), contains(0L));
+        assertThat(index.buildNumbersFor("console-app-1.3", "."), is(empty()));
+        assertThat(index.buildNumbersFor("console-app-1.2", "-"), is(empty()));
+    }
+
+    @Test
+    public void canLookUpTagsByExactName() throws Exception {
+        TestProject project = TestProject.singleModuleProject();
+        saveFileInModuleAndTag(project, ".", "1.0", 1);
+
+        ReleaseTagIndex index = ReleaseTagIndex.of(project.local.getRepository(), project.local.tagList().call());
+
+        assertThat(index.hasTag("root-1.0.1"), is(true));
+        assertThat(index.hasTag("root-1.0."), is(false));
+        assertThat(index.hasTag("root-1.0.10"), is(false));
+        assertThat(index.refs(), hasSize(1));
+    }
+
+    @Test
+    public void annotatedTagsArePeeledToTheirCommits() throws Exception {
+        TestProject project = TestProject.singleModuleProject();
+        saveFileInModuleAndTag(project, ".", "1.0", 1);
+        ObjectId head = project.local.getRepository().resolve("HEAD");
+
+        ReleaseTagIndex index = ReleaseTagIndex.of(project.local.getRepository(), project.local.tagList().call());
+        List<RefWithCommitId> tags = index.tagsFor("root-1.0", ".");
+
+        assertThat(tags, hasSize(1));
+        assertThat(tags.get(0).getCommitObjectId(), equalTo(head));
+        assertThat(tags.get(0).getRef().getObjectId(), not(equalTo(head)));
+    }
+}
@@ -0,0 +1,131 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.building.DefaultModelProcessor;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelProcessor;
+import org.apache.maven.model.io.DefaultModelReader;
+import org.apache.maven.model.locator.DefaultModelLocator;
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Collections.singleton;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class ReleaseVersionsModelProcessorTest {
+
+    private static final String POM = "<project>\n" +
+        "    <modelVersion>4.0.0</modelVersion>\n" +
+        "    <parent>\n" +
+        "        <groupId>com.example</groupId>\n" +
+        "        <artifactId>parent</artifactId>\n" +
+        "        <version>1.0-SNAPSHOT</version>\n" +
+        "    </parent>\n" +
+        "    <artifactId>core</artifactId>\n" +
+        "    <version>2.0-SNAPSHOT</version>\n" +
+        "    <dependencies>\n" +
+        "        <dependency>\n" +
+        "            <groupId>com.example</groupId>\n" +
+        "            <artifactId>utils</artifactId>\n" +
+        "            <version>3.0-SNAPSHOT</version>\n" +
+        "        </dependency>\n" +
+        "        <dependency>\n" +
+        "            <groupId>junit</groupId>\n" +
+        "            <artifactId>junit</artifactId>\n" +
+        "            <version>4.13</version>\n" +
+        "        </dependency>\n" +
+        "        <dependency>\n" +
+        "            <groupId>com.example</groupId>\n" +
+        "            <artifactId>managed</artifactId>\n" +
+        "        </dependency>\n" +
+        "    </dependencies>\n" +
+        "</project>\n";
+
+    @Test
+    public void releaseVersionsAreSetAsThePomIsReadWithoutChangingTheFile() throws Exception {
+        File pom = File.createTempFile("pom", ".xml");
+        Files.write(pom.toPath(), POM.getBytes(StandardCharsets.UTF_8));
+        Map<String, String> versions = new HashMap<String, String>();
+        versions.put("com.example:parent", "1.0.4");
+        versions.put("com.example:core", "2.0.7");
+        versions.put("com.example:utils", "3.0.1");
+        versions.put("com.example:managed", "5.0.0");
+
+        Model model = new ReleaseVersionsModelProcessor(defaultProcessor(), new ReleaseVersions(versions, singleton(pom.getCanonicalFile())))
+            .read(pom, Collections.<String, Object>emptyMap());
+
+        assertThat(model.getVersion(), equalTo("2.0.7"));
+        assertThat(model.getParent().getVersion(), equalTo("1.0.4"));
+        assertThat(model.getDependencies().get(0).getVersion(), equalTo("3.0.1"));
+        assertThat(model.getDependencies().get(1).getVersion(), equalTo("4.13"));
+        assertThat(model.getDependencies().get(2).getVersion(), nullValue());
+        assertThat(new String(Files.readAllBytes(pom.toPath()), StandardCharsets.UTF_8), equalTo(POM));
+    }
+
+    @Test
+    public void pomsAreReadUnchangedWhenThereAreNoReleaseVersions() throws Exception {
+        File pom = File.createTempFile("pom", ".xml");
+        Files.write(pom.toPath(), POM.getBytes(StandardCharsets.UTF_8));
+
+        Model model = new ReleaseVersionsModelProcessor(defaultProcessor(), ReleaseVersions.NONE).read(pom, Collections.<String, Object>emptyMap());
+
+        assertThat(model.getVersion(), equalTo("2.0-SNAPSHOT"));
+        assertThat(model.getParent().getVersion(), equalTo("1.0-SNAPSHOT"));
+    }
+
+    @Test
+    public void onlyThePomsOfTheReactorAreGivenReleaseVersions() throws Exception {
+        File reactorPom = File.createTempFile("pom", ".xml");
+        Files.write(reactorPom.toPath(), POM.getBytes(StandardCharsets.UTF_8));
+        File repositoryPom = File.createTempFile("core-2.0-SNAPSHOT", ".pom");
+        Files.write(repositoryPom.toPath(), POM.getBytes(StandardCharsets.UTF_8));
+        Map<String, String> versions = new HashMap<String, String>();
+        versions.put("com.example:core", "2.0.7");
+        ReleaseVersionsModelProcessor processor = new ReleaseVersionsModelProcessor(defaultProcessor(),
+            new ReleaseVersions(versions, singleton(reactorPom.getCanonicalFile())));
+
+        assertThat(readAsMavenDoes(processor, reactorPom).getVersion(), equalTo("2.0.7"));
+        assertThat(readAsMavenDoes(processor, repositoryPom).getVersion(), equalTo("2.0-SNAPSHOT"));
+    }
+
+    @Test
+    public void theVersionsFileNamesTheReactorPoms() throws Exception {
+        File pom = File.createTempFile("pom", ".xml");
+        MavenProject project = new MavenProject();
+        project.setGroupId("com.example");
+        project.setArtifactId("core");
+        project.setFile(pom);
+        ReleasableModule module = new ReleasableModule(project, new VersionName("2.0-SNAPSHOT", "2.0", 7), null, ".");
+        File versionsFile = File.createTempFile("release-versions", ".properties");
+
+        ReleaseVersions.write(versionsFile, singleton(module));
+        ReleaseVersions versions = ReleaseVersions.read(versionsFile.getPath());
+
+        assertThat(versions.versionOf("com.example", "core"), equalTo("2.0.7"));
+        assertThat(versions.isReactorPom(pom), is(true));
+        assertThat(versions.isReactorPom(versionsFile), is(false));
+    }
+
+    private static Model readAsMavenDoes(ReleaseVersionsModelProcessor processor, File pom) throws Exception {
+        Map<String, Object> options = new HashMap<String, Object>();
+        options.put(ModelProcessor.SOURCE, new FileModelSource(pom));
+        try (InputStream in = Files.newInputStream(pom.toPath())) {
+            return processor.read(in, options);
+        }
+    }
+
+    private static DefaultModelProcessor defaultProcessor() {
+        return new DefaultModelProcessor().setModelLocator(new DefaultModelLocator()).setModelReader(new DefaultModelReader());
+    }
+}
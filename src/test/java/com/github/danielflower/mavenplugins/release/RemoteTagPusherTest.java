@@ -0,0 +1,142 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
+import org.junit.Assert;
+import org.junit.Test;
+import scaffolding.TestProject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+public class RemoteTagPusherTest {
+
+    private final TestProject project = TestProject.singleModuleProject();
+    private final RemoteTagPusher.Push realPush = RemoteTagPusher.pushCommand(project.local, null, null);
+
+    @Test
+    public void pushesAllTheTagsAtomicallyWhenTheRemoteAcceptsIt() throws Exception {
+        List<Boolean> attempts = new ArrayList<Boolean>();
+        RemoteTagPusher pusher = new RemoteTagPusher(project.local, (refs, atomic) -> {
+            attempts.add(atomic);
+            return realPush.push(refs, atomic);
+        }, 1);
+
+        pusher.pushTags(tags(3));
+
+        assertThat(attempts, contains(true));
+        assertThat(project.origin.tagList().call(), hasSize(3));
+    }
+
+    @Test
+    public void retriesTheAtomicPushWhenItFailsBecauseOfTheTransport() throws Exception {
+        List<Boolean> attempts = new ArrayList<Boolean>();
+        RemoteTagPusher pusher = new RemoteTagPusher(project.local, (refs, atomic) -> {
+            attempts.add(atomic);
+            if (attempts.size() <= 2) {
+                throw new TransportException("Connection reset");
+            }
+            return realPush.push(refs, atomic);
+        }, 1);
+
+        pusher.pushTags(tags(3));
+
+        assertThat(attempts, contains(true, true, true));
+        assertThat(project.origin.tagList().call(), hasSize(3));
+    }
+
+    @Test
+    public void noTagsArePushedWhenTheAtomicPushKeepsFailingBecauseOfTheTransport() throws Exception {
+        List<Boolean> attempts = new ArrayList<Boolean>();
+        RemoteTagPusher pusher = new RemoteTagPusher(project.local, (refs, atomic) -> {
+            attempts.add(atomic);
+            throw new TransportException("Connection reset");
+        }, 1);
+
+        try {
+            pusher.pushTags(tags(3));
+            Assert.fail("Should have thrown");
+        } catch (TagPushException e) {
+            assertThat(e.getStatuses().get("module-0"), is(RemoteRefUpdate.Status.NOT_ATTEMPTED));
+        }
+        assertThat(attempts, contains(true, true, true));
+        assertThat(project.origin.tagList().call(), is(empty()));
+    }
+
+    @Test
+    public void pushesInChunksWhenTheRemoteDoesNotSupportAtomicPushes() throws Exception {
+        List<Integer> chunkSizes = new ArrayList<Integer>();
+        RemoteTagPusher pusher = new RemoteTagPusher(project.local, (refs, atomic) -> {
+            if (atomic) {
+                throw new TransportException(project.originDir + ": " + JGitText.get().atomicPushNotSupported);
+            }
+            chunkSizes.add(refs.size());
+            return realPush.push(refs, false);
+        }, 1);
+
+        pusher.pushTags(tags(RemoteTagPusher.CHUNK_SIZE + 20));
+
+        assertThat(chunkSizes, contains(RemoteTagPusher.CHUNK_SIZE, 20));
+        assertThat(project.origin.tagList().call(), hasSize(RemoteTagPusher.CHUNK_SIZE + 20));
+    }
+
+    @Test
+    public void reportsWhichTagsWerePushedWhenAChunkKeepsFailing() throws Exception {
+        RemoteTagPusher pusher = new RemoteTagPusher(project.local, (refs, atomic) -> {
+            if (atomic) {
+                throw new TransportException(JGitText.get().atomicPushNotSupported);
+            }
+            if (refs.get(0).getName().endsWith("-" + RemoteTagPusher.CHUNK_SIZE)) {
+                throw new TransportException("Connection reset");
+            }
+            return realPush.push(refs, false);
+        }, 1);
+
+        try {
+            pusher.pushTags(tags(RemoteTagPusher.CHUNK_SIZE + 1));
+            Assert.fail("Should have thrown");
+        } catch (TagPushException e) {
+            assertThat(e.getStatuses().get("module-0"), is(RemoteRefUpdate.Status.OK));
+            assertThat(e.getStatuses().get("module-" + RemoteTagPusher.CHUNK_SIZE), is(RemoteRefUpdate.Status.NOT_ATTEMPTED));
+            assertThat(e.statusLines().get(0), equalTo(" * module-0: OK"));
+        }
+        assertThat(project.origin.tagList().call(), hasSize(RemoteTagPusher.CHUNK_SIZE));
+    }
+
+    @Test
+    public void reportsTagsThatTheRemoteRejects() throws GitAPIException {
+        AnnotatedTag.create("module-1", "1", 99).saveAtHEAD(project.origin);
+        RemoteTagPusher pusher = new RemoteTagPusher(project.local, realPush, 1);
+
+        try {
+            pusher.pushTags(tags(2));
+            Assert.fail("Should have thrown");
+        } catch (TagPushException e) {
+            assertThat(RemoteTagPusher.isPushed(e.getStatuses().get("module-1")), is(false));
+        }
+        List<String> originTags = new ArrayList<String>();
+        for (Ref ref : project.origin.tagList().call()) {
+            originTags.add(ref.getName());
+        }
+        assertThat(originTags, equalTo(asList("refs/tags/module-1")));
+    }
+
+    private static List<AnnotatedTag> tags(int count) {
+        List<AnnotatedTag> tags = new ArrayList<AnnotatedTag>();
+        for (int i = 0; i < count; i++) {
+            tags.add(AnnotatedTag.create("module-" + i, "1", i));
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.danielflower.mavenplugins.release;
+
+import org.apache.maven.plugin.logging.Log;
+import org.junit.Test;
+import scaffolding.TestProject;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+public class RollbackJournalTest {
+
+    private final TestProject project = TestProject.singleModuleProject();
+    private final Log log = mock(Log.class);
+
+    @Test
+    public void filesArePutBackAsTheyWereBeforeTheyWereFirstChanged() throws Exception {
+        File pom = new File(project.localDir, "pom.xml");
+        File created = new File(project.localDir, "MANIFEST.MF");
+        String original = read(pom);
+        RollbackJournal journal = RollbackJournal.inGitDirectory(project.local.getRepository());
+
+        journal.keep(pom);
+        write(pom, "first change");
+        journal.keep(pom);
+        write(pom, "second change");
+        Set<File> written = journal.keepingSet();
+        written.add(created);
+        write(created, "new file");
+
+        assertThat(journal.revert(log), is(true));
+        assertThat(read(pom), equalTo(original));
+        assertThat(created.exists(), is(false));
+        assertThat(journal.directory().exists(), is(false));
+    }
+
+    @Test
+    public void changesLeftByARunThatDidNotFinishCanBeRevertedByTheNextRun() throws Exception {
+        File pom = new File(project.localDir, "pom.xml");
+        String original = read(pom);
+        RollbackJournal.inGitDirectory(project.local.getRepository()).keep(pom);
+        write(pom, "changed by a release that was killed");
+
+        LocalGitRepo repo = new LocalGitRepo(project.local, new LocalTagFetcher(project.local), new LocalTagPusher(project.local));
+        assertThat(repo.rollbackJournal().files(), contains(pom.getCanonicalFile()));
+        repo.revertChangesLeftByEarlierRelease(log);
+
+        assertThat(read(pom), equalTo(original));
+        assertThat(repo.rollbackJournal().hasChanges(), is(false));
+        repo.errorIfNotClean(Collections.<String>emptySet());
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static void write(File file, String contents) throws Exception {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+}
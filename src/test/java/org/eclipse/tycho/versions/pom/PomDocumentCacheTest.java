@@ -0,0 +1,43 @@
+package org.eclipse.tycho.versions.pom;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class PomDocumentCacheTest {
+
+    private static final String POM = "<project><groupId>g</groupId><artifactId>a</artifactId><version>1.0-SNAPSHOT</version></project>";
+
+    @Test
+    public void readOnlyPomsAreParsedOnceAndWritesUpdateTheCache() throws Exception {
+        File file = File.createTempFile("pom", ".xml");
+        Files.write(file.toPath(), POM.getBytes(StandardCharsets.UTF_8));
+        PomDocumentCache cache = new PomDocumentCache();
+
+        PomFile first = cache.readPom(file, false);
+        assertThat(cache.readPom(file, false), sameInstance(first));
+        assertThat(cache.readPom(file, true), not(sameInstance(first)));
+
+        cache.write(file, POM.replace("1.0-SNAPSHOT", "1.0.3").getBytes(StandardCharsets.UTF_8));
+        assertThat(cache.readPom(file, false).getVersion(), equalTo("1.0.3"));
+    }
+
+    @Test
+    public void filesChangedOnDiskAreReadAgain() throws Exception {
+        File file = File.createTempFile("pom", ".xml");
+        Files.write(file.toPath(), POM.getBytes(StandardCharsets.UTF_8));
+        PomDocumentCache cache = new PomDocumentCache();
+        cache.read(file);
+
+        Files.write(file.toPath(), POM.replace("1.0-SNAPSHOT", "1.0.12").getBytes(StandardCharsets.UTF_8));
+
+        assertThat(cache.readPom(file, false).getVersion(), equalTo("1.0.12"));
+    }
+}